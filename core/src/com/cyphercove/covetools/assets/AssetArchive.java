@@ -0,0 +1,182 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * A read-only archive of asset files packed by {@link AssetArchivePacker}. The archive file is memory-mapped when
+ * possible, and otherwise read into memory once, so reading an asset from it never opens a file. Files are served as
+ * {@link AssetArchiveFileHandle}s, usually through an {@link AssetArchiveResolver}.
+ * <p>
+ * The archive starts with the magic number {@link #MAGIC} and the format {@link #VERSION}, followed by the number of
+ * entries and an index of the entries sorted by path. Each index entry holds the length of its UTF-8 encoded path, the
+ * path, and the offset and length of its payload. Payloads follow the index, each starting at a multiple of
+ * {@link #ALIGNMENT} bytes from the start of the archive. All numbers are big-endian ints.
+ * <p>
+ * On Android, an internal archive file can only be memory-mapped if it is stored uncompressed in the APK, for example
+ * by adding its extension to {@code androidResources.noCompress}. Otherwise it is read into memory.
+ * <p>
+ * Not available on GWT.
+ *
+ * @author cypherdare
+ */
+public class AssetArchive {
+
+    public static final int MAGIC = 0x43544150; // "CTAP"
+    public static final int VERSION = 1;
+    public static final int ALIGNMENT = 16;
+
+    private final FileHandle archiveFile;
+    private final ByteBuffer buffer;
+    /** Paths of the entries, sorted. */
+    private final String[] paths;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    /**
+     * Opens an archive, reading its index.
+     *
+     * @param archiveFile The archive file.
+     * @throws GdxRuntimeException if the file cannot be read or is not a valid archive.
+     */
+    public AssetArchive(FileHandle archiveFile) {
+        this.archiveFile = archiveFile;
+        buffer = mapOrRead(archiveFile);
+        try {
+            ByteBuffer index = buffer.duplicate();
+            if (index.getInt() != MAGIC)
+                throw new GdxRuntimeException("Not an asset archive: " + archiveFile);
+            int version = index.getInt();
+            if (version != VERSION)
+                throw new GdxRuntimeException("Unsupported asset archive version " + version + ": " + archiveFile);
+            int count = index.getInt();
+            paths = new String[count];
+            offsets = new int[count];
+            lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                byte[] pathBytes = new byte[index.getInt()];
+                index.get(pathBytes);
+                paths[i] = new String(pathBytes, StandardCharsets.UTF_8);
+                offsets[i] = index.getInt();
+                lengths[i] = index.getInt();
+                if (offsets[i] < 0 || lengths[i] < 0 || offsets[i] > buffer.capacity() - lengths[i])
+                    throw new GdxRuntimeException("Asset archive entry " + paths[i] + " is out of bounds: " + archiveFile);
+            }
+        } catch (RuntimeException e) { // BufferUnderflowException or NegativeArraySizeException
+            if (e instanceof GdxRuntimeException)
+                throw e;
+            throw new GdxRuntimeException("Corrupt asset archive: " + archiveFile, e);
+        }
+    }
+
+    private static ByteBuffer mapOrRead(FileHandle archiveFile) {
+        try {
+            return archiveFile.map();
+        } catch (GdxRuntimeException e) {
+            // Classpath files, and compressed Android assets, cannot be mapped.
+            return ByteBuffer.wrap(archiveFile.readBytes());
+        }
+    }
+
+    public FileHandle getArchiveFile() {
+        return archiveFile;
+    }
+
+    /** @return The number of files in the archive. */
+    public int size() {
+        return paths.length;
+    }
+
+    /** @return The path of the file at the index, in sorted order. */
+    public String getPath(int index) {
+        return paths[index];
+    }
+
+    /** @return The index of the file with the path, or a negative number if it is not in the archive. */
+    public int indexOf(String path) {
+        return Arrays.binarySearch(paths, normalize(path));
+    }
+
+    public boolean contains(String path) {
+        return indexOf(path) >= 0;
+    }
+
+    /** @return Whether the path is a directory containing at least one file in the archive. */
+    public boolean isDirectory(String path) {
+        String prefix = directoryPrefix(path);
+        if (prefix.isEmpty())
+            return paths.length > 0;
+        int index = -Arrays.binarySearch(paths, prefix) - 1;
+        return index >= 0 && index < paths.length && paths[index].startsWith(prefix);
+    }
+
+    /**
+     * @return The range of indices of files within the directory, including those in its subdirectories, as the first
+     * index and one past the last index.
+     */
+    int[] getDirectoryRange(String path) {
+        String prefix = directoryPrefix(path);
+        int start = prefix.isEmpty() ? 0 : -Arrays.binarySearch(paths, prefix) - 1;
+        if (start < 0) // a file has the same path as the prefix, which cannot happen as paths do not end in '/'
+            start = -start - 1;
+        int end = start;
+        while (end < paths.length && paths[end].startsWith(prefix))
+            end++;
+        return new int[]{start, end};
+    }
+
+    /**
+     * @return A read-only buffer holding the contents of the file at the index, sharing memory with the archive. Its
+     * position is 0 and its limit is the length of the file.
+     */
+    public ByteBuffer slice(int index) {
+        ByteBuffer slice = buffer.asReadOnlyBuffer();
+        slice.position(offsets[index]);
+        slice.limit(offsets[index] + lengths[index]);
+        return slice.slice();
+    }
+
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    /** @return A handle for the file at the path. The file does not need to exist in the archive. */
+    public AssetArchiveFileHandle getFileHandle(String path) {
+        return new AssetArchiveFileHandle(this, normalize(path));
+    }
+
+    static String normalize(String path) {
+        path = path.replace('\\', '/');
+        while (path.startsWith("./"))
+            path = path.substring(2);
+        while (path.startsWith("/"))
+            path = path.substring(1);
+        return path;
+    }
+
+    private static String directoryPrefix(String path) {
+        path = normalize(path);
+        if (path.isEmpty() || path.endsWith("/"))
+            return path;
+        return path + "/";
+    }
+}
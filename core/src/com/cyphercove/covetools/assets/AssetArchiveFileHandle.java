@@ -0,0 +1,232 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FilenameFilter;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.badlogic.gdx.Files.FileType;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectSet;
+
+/**
+ * A read-only handle to a file or directory in an {@link AssetArchive}. Streams read directly from the archive's memory
+ * without copying it. The handle has the {@link FileType#Internal} type, so it cannot be written, moved or deleted.
+ *
+ * @author cypherdare
+ */
+public class AssetArchiveFileHandle extends FileHandle {
+
+    private final AssetArchive archive;
+    private final String archivePath;
+
+    AssetArchiveFileHandle(AssetArchive archive, String archivePath) {
+        super(new File(archivePath), FileType.Internal);
+        this.archive = archive;
+        this.archivePath = archivePath;
+    }
+
+    public AssetArchive getArchive() {
+        return archive;
+    }
+
+    private int requireIndex() {
+        int index = archive.indexOf(archivePath);
+        if (index < 0) {
+            if (archive.isDirectory(archivePath))
+                throw new GdxRuntimeException("Cannot open a stream to a directory: " + archivePath + " (" + archive.getArchiveFile() + ")");
+            throw new GdxRuntimeException("File not found: " + archivePath + " (" + archive.getArchiveFile() + ")");
+        }
+        return index;
+    }
+
+    @Override
+    public InputStream read() {
+        return new ByteBufferInputStream(archive.slice(requireIndex()));
+    }
+
+    @Override
+    public byte[] readBytes() {
+        ByteBuffer slice = archive.slice(requireIndex());
+        byte[] bytes = new byte[slice.remaining()];
+        slice.get(bytes);
+        return bytes;
+    }
+
+    /** @return A read-only buffer sharing memory with the archive. Only {@link FileChannel.MapMode#READ_ONLY} is supported. */
+    @Override
+    public ByteBuffer map(FileChannel.MapMode mode) {
+        if (mode != FileChannel.MapMode.READ_ONLY)
+            throw new GdxRuntimeException("Cannot map a file in an asset archive for writing: " + archivePath);
+        return archive.slice(requireIndex());
+    }
+
+    @Override
+    public long length() {
+        int index = archive.indexOf(archivePath);
+        return index < 0 ? 0 : archive.getLength(index);
+    }
+
+    @Override
+    public long lastModified() {
+        return archive.getArchiveFile().lastModified();
+    }
+
+    @Override
+    public boolean exists() {
+        return archive.contains(archivePath) || archive.isDirectory(archivePath);
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return archive.isDirectory(archivePath);
+    }
+
+    /** @return The names of the files and directories directly within this directory. */
+    private Array<String> listNames() {
+        Array<String> names = new Array<>();
+        if (!isDirectory())
+            return names;
+        int[] range = archive.getDirectoryRange(archivePath);
+        int prefixLength = archivePath.isEmpty() ? 0 : archivePath.length() + 1;
+        ObjectSet<String> directories = new ObjectSet<>();
+        for (int i = range[0]; i < range[1]; i++) {
+            String relativePath = archive.getPath(i).substring(prefixLength);
+            int slash = relativePath.indexOf('/');
+            if (slash < 0)
+                names.add(relativePath);
+            else if (directories.add(relativePath.substring(0, slash)))
+                names.add(relativePath.substring(0, slash));
+        }
+        return names;
+    }
+
+    @Override
+    public FileHandle[] list() {
+        Array<String> names = listNames();
+        FileHandle[] handles = new FileHandle[names.size];
+        for (int i = 0; i < names.size; i++)
+            handles[i] = child(names.get(i));
+        return handles;
+    }
+
+    @Override
+    public FileHandle[] list(FileFilter filter) {
+        Array<FileHandle> handles = new Array<>(FileHandle.class);
+        for (String name : listNames()) {
+            FileHandle child = child(name);
+            if (filter.accept(child.file()))
+                handles.add(child);
+        }
+        return handles.toArray();
+    }
+
+    @Override
+    public FileHandle[] list(FilenameFilter filter) {
+        Array<FileHandle> handles = new Array<>(FileHandle.class);
+        for (String name : listNames()) {
+            if (filter.accept(file, name))
+                handles.add(child(name));
+        }
+        return handles.toArray();
+    }
+
+    @Override
+    public FileHandle[] list(String suffix) {
+        Array<FileHandle> handles = new Array<>(FileHandle.class);
+        for (String name : listNames()) {
+            if (name.endsWith(suffix))
+                handles.add(child(name));
+        }
+        return handles.toArray();
+    }
+
+    @Override
+    public FileHandle child(String name) {
+        return archive.getFileHandle(archivePath.isEmpty() ? name : archivePath + "/" + name);
+    }
+
+    @Override
+    public FileHandle sibling(String name) {
+        if (archivePath.isEmpty())
+            throw new GdxRuntimeException("Cannot get the sibling of the root.");
+        return parent().child(name);
+    }
+
+    @Override
+    public FileHandle parent() {
+        int slash = archivePath.lastIndexOf('/');
+        return archive.getFileHandle(slash < 0 ? "" : archivePath.substring(0, slash));
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+        private int mark;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            mark = buffer.position();
+        }
+
+        @Override
+        public synchronized void reset() {
+            buffer.position(mark);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Packs a directory of asset files into a single {@link AssetArchive} file. Intended to be run at build time, for
+ * example with the {@code packAssets} Gradle task of the core module:
+ * <pre>
+ * gradlew :core:packAssets -PassetsDir=android/assets -ParchiveFile=android/assets/assets.pack
+ * </pre>
+ * Hidden files and directories, whose names start with a period, are skipped. Not available on GWT.
+ *
+ * @author cypherdare
+ */
+public class AssetArchivePacker {
+
+    private AssetArchivePacker() {
+    }
+
+    /**
+     * @param args The directory to pack, and the archive file to write.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || args[0].isEmpty() || args[1].isEmpty()) {
+            System.err.println("Usage: AssetArchivePacker <assetsDir> <archiveFile>");
+            System.exit(1);
+        }
+        int count = pack(new File(args[0]), new File(args[1]));
+        System.out.println("Packed " + count + " files into " + args[1]);
+    }
+
+    /**
+     * Writes all files in the directory and its subdirectories to an archive. Their paths in the archive are relative
+     * to the directory, with '/' separators. If the archive file is inside the directory, it is not packed into itself.
+     *
+     * @param sourceDirectory The directory to pack.
+     * @param archiveFile     The archive file to write. It is overwritten if it exists.
+     * @return The number of files packed.
+     * @throws IOException if a file cannot be read or the archive cannot be written.
+     */
+    public static int pack(File sourceDirectory, File archiveFile) throws IOException {
+        if (!sourceDirectory.isDirectory())
+            throw new IOException("Not a directory: " + sourceDirectory);
+        List<String> paths = new ArrayList<>();
+        collectPaths(sourceDirectory, "", archiveFile.getCanonicalFile(), paths);
+        Collections.sort(paths); // The same order as the binary search in AssetArchive.
+
+        byte[][] pathBytes = new byte[paths.size()][];
+        long indexEnd = 12;
+        for (int i = 0; i < paths.size(); i++) {
+            pathBytes[i] = paths.get(i).getBytes(StandardCharsets.UTF_8);
+            indexEnd += 4 + pathBytes[i].length + 8;
+        }
+        long[] offsets = new long[paths.size()];
+        long[] lengths = new long[paths.size()];
+        long offset = indexEnd;
+        for (int i = 0; i < paths.size(); i++) {
+            offset = align(offset);
+            offsets[i] = offset;
+            lengths[i] = new File(sourceDirectory, paths.get(i)).length();
+            offset += lengths[i];
+        }
+        if (offset > Integer.MAX_VALUE)
+            throw new IOException("Assets are too large for a single archive: " + offset + " bytes");
+
+        File parent = archiveFile.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(archiveFile)))) {
+            output.writeInt(AssetArchive.MAGIC);
+            output.writeInt(AssetArchive.VERSION);
+            output.writeInt(paths.size());
+            for (int i = 0; i < paths.size(); i++) {
+                output.writeInt(pathBytes[i].length);
+                output.write(pathBytes[i]);
+                output.writeInt((int) offsets[i]);
+                output.writeInt((int) lengths[i]);
+            }
+            byte[] buffer = new byte[8192];
+            for (int i = 0; i < paths.size(); i++) {
+                while (output.size() < offsets[i])
+                    output.write(0);
+                long written = 0;
+                try (InputStream input = new FileInputStream(new File(sourceDirectory, paths.get(i)))) {
+                    int count;
+                    while ((count = input.read(buffer)) > 0) {
+                        output.write(buffer, 0, count);
+                        written += count;
+                    }
+                }
+                if (written != lengths[i])
+                    throw new IOException("File changed while packing: " + paths.get(i));
+            }
+        }
+        return paths.size();
+    }
+
+    private static void collectPaths(File directory, String pathPrefix, File archiveFile, List<String> paths) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null)
+            throw new IOException("Cannot list directory: " + directory);
+        for (File file : files) {
+            if (file.getName().startsWith("."))
+                continue;
+            String path = pathPrefix + file.getName();
+            if (file.isDirectory())
+                collectPaths(file, path + "/", archiveFile, paths);
+            else if (!file.getCanonicalFile().equals(archiveFile))
+                paths.add(path);
+        }
+    }
+
+    private static long align(long offset) {
+        long remainder = offset % AssetArchive.ALIGNMENT;
+        return remainder == 0 ? offset : offset + AssetArchive.ALIGNMENT - remainder;
+    }
+}
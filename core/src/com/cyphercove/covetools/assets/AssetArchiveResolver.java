@@ -0,0 +1,59 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.files.FileHandle;
+
+/**
+ * Resolves file names to files in an {@link AssetArchive}. Can be passed to an {@link AssignmentAssetManager} so its
+ * assets are read from the archive. Not available on GWT.
+ *
+ * @author cypherdare
+ */
+public class AssetArchiveResolver implements FileHandleResolver {
+
+    private final AssetArchive archive;
+    private final FileHandleResolver fallbackResolver;
+
+    /**
+     * @param archive The archive to read files from. Files not in the archive are resolved to handles that do not
+     *                exist.
+     */
+    public AssetArchiveResolver(AssetArchive archive) {
+        this(archive, null);
+    }
+
+    /**
+     * @param archive          The archive to read files from.
+     * @param fallbackResolver The resolver for files that are not in the archive. May be null.
+     */
+    public AssetArchiveResolver(AssetArchive archive, FileHandleResolver fallbackResolver) {
+        this.archive = archive;
+        this.fallbackResolver = fallbackResolver;
+    }
+
+    public AssetArchive getArchive() {
+        return archive;
+    }
+
+    @Override
+    public FileHandle resolve(String fileName) {
+        if (fallbackResolver != null && !archive.contains(fileName))
+            return fallbackResolver.resolve(fileName);
+        return archive.getFileHandle(fileName);
+    }
+}
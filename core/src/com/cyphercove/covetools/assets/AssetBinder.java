@@ -0,0 +1,93 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+
+/**
+ * Reads and writes the annotated asset fields of one container class on behalf of {@link AssignmentAssetManager}.
+ * <p>
+ * Implementations are generated by the covetools-processor annotation processor, which writes a binder named
+ * {@code <ContainerName>AssetBinder} into the package of each container class. Nested container classes have the
+ * names of their enclosing classes prepended, separated by underscores. When no generated binder can be found for a
+ * container class, AssignmentAssetManager binds its fields by reflection instead.
+ * <p>
+ * Each individual asset of a container is a slot. A field annotated with {@link Asset}, {@link TextureAsset} or
+ * {@link ShaderProgramAsset} is one slot, and each element of an {@link Assets} array is a separate slot. For
+ * {@link AssetRef} fields, the slot's asset type is the type argument of the AssetRef.
+ *
+ * @param <T> The type of the asset container.
+ * @author cypherdare
+ */
+public interface AssetBinder<T> {
+
+    /** @return The number of asset slots in the container class. */
+    int getSlotCount ();
+
+    /** @return The type of the asset that is assigned to the slot. */
+    Class<?> getAssetType (int slot);
+
+    /**
+     * @return Whether the field backing the slot already holds a value, in which case the slot will not be loaded. For
+     * {@link Assets} array slots, this is whether the array itself has been assigned.
+     */
+    boolean isAssigned (T container, int slot);
+
+    /**
+     * Creates the descriptor used to load the asset of a slot.
+     *
+     * @param container  The container whose asset will be loaded. Parameters may be read from its fields.
+     * @param pathPrefix The path prefix of the container. Never null.
+     * @param slot       The slot of the asset.
+     * @return The descriptor of the asset.
+     */
+    AssetDescriptor<?> createDescriptor (T container, String pathPrefix, int slot);
+
+    /**
+     * @return Whether the descriptor created for the slot depends only on the path prefix and not on the container
+     * instance, so {@link AssignmentAssetManager} may reuse it for all containers of the class with the same path
+     * prefix. This is false for slots whose parameters are read from a field. The default is false.
+     */
+    default boolean isDescriptorShared (int slot) {
+        return false;
+    }
+
+    /**
+     * @return Whether the slot is an {@link AssetRef} field, which is assigned an AssetRef when the container is queued
+     * instead of being loaded with the container. The default is false.
+     */
+    default boolean isLazy (int slot) {
+        return false;
+    }
+
+    /**
+     * @return The size in bytes of the slot's file without a path prefix, as recorded at build time when the
+     * covetools-processor {@code covetools.assetsDir} option is set, or -1 if it is unknown. The default is -1.
+     */
+    default long getFileSize (int slot) {
+        return -1;
+    }
+
+    /**
+     * Assigns a loaded asset to the field backing a slot. For {@link Assets} array slots, the array is created first if
+     * it has not been assigned yet. {@link AssignmentAssetManager} assigns null to each slot when the container is
+     * queued, so {@link Assets} arrays are created empty before their assets are loaded.
+     */
+    void assign (T container, int slot, Object asset);
+
+    /** Nulls the field backing a slot. For {@link Assets} array slots, the whole array field is nulled. */
+    void clear (T container, int slot);
+}
@@ -26,7 +26,17 @@ public interface AssetContainer {
     String getAssetPathPrefix ();
 
     /**
-     * Called when the AssetManager has finished loading all assets and populated the annotated asset fields in this container.
+     * Called when the AssetManager has finished loading all assets of this container and populated its annotated asset
+     * fields. Assets of other containers may still be loading. For a {@link ProcessedAssetContainer}, this is called
+     * after {@link ProcessedAssetContainer#processAssets()} has finished.
      */
     void onAssetsLoaded ();
+
+    /**
+     * @return The priority of this container's assets when it is passed to {@link AssignmentAssetManager#loadAssetFields(Object)}.
+     * Assets of higher priority containers are loaded first. The default is 0.
+     */
+    default int getLoadPriority () {
+        return 0;
+    }
 }
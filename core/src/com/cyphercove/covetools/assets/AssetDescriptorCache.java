@@ -0,0 +1,106 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Provides the descriptors of container slots for {@link AssignmentAssetManager}, so that containers requesting the
+ * same asset share a single descriptor. Descriptors of slots for which {@link AssetBinder#isDescriptorShared(int)} is
+ * true are created once per binder and path prefix, and kept while a container with that prefix is loaded. All descriptors are interned by file name, type and parameter
+ * object while their asset is referenced.
+ *
+ * @author cypherdare
+ */
+final class AssetDescriptorCache {
+
+    private final ObjectMap<AssetBinder<?>, ObjectMap<String, AssetDescriptor<?>[]>> sharedDescriptors = new ObjectMap<>();
+    private final ObjectMap<String, Array<AssetDescriptor<?>>> internedDescriptors = new ObjectMap<>();
+    /** The number of loaded containers using each path prefix. */
+    private final ObjectIntMap<String> prefixUseCounts = new ObjectIntMap<>();
+
+    AssetDescriptor<?> get(AssetBinder<Object> binder, Object container, String pathPrefix, int slot) {
+        if (!binder.isDescriptorShared(slot))
+            return intern(binder.createDescriptor(container, pathPrefix, slot));
+        ObjectMap<String, AssetDescriptor<?>[]> descriptorsByPrefix = sharedDescriptors.get(binder);
+        if (descriptorsByPrefix == null) {
+            descriptorsByPrefix = new ObjectMap<>();
+            sharedDescriptors.put(binder, descriptorsByPrefix);
+        }
+        AssetDescriptor<?>[] descriptors = descriptorsByPrefix.get(pathPrefix);
+        if (descriptors == null) {
+            descriptors = new AssetDescriptor<?>[binder.getSlotCount()];
+            descriptorsByPrefix.put(pathPrefix, descriptors);
+        }
+        AssetDescriptor<?> descriptor = descriptors[slot];
+        if (descriptor == null) {
+            descriptor = binder.createDescriptor(container, pathPrefix, slot);
+            descriptors[slot] = descriptor;
+        }
+        return intern(descriptor);
+    }
+
+    /**
+     * @return A previously interned descriptor with the same file name, type and parameter object, or otherwise the
+     * given descriptor.
+     */
+    private AssetDescriptor<?> intern(AssetDescriptor<?> descriptor) {
+        Array<AssetDescriptor<?>> descriptors = internedDescriptors.get(descriptor.fileName);
+        if (descriptors == null) {
+            descriptors = new Array<>(false, 1);
+            internedDescriptors.put(descriptor.fileName, descriptors);
+        }
+        for (AssetDescriptor<?> interned : descriptors) {
+            if (interned.type == descriptor.type && interned.params == descriptor.params)
+                return interned;
+        }
+        descriptors.add(descriptor);
+        return descriptor;
+    }
+
+    /** Forgets the interned descriptors of an asset that is no longer referenced by any container. */
+    void release(String fileName) {
+        internedDescriptors.remove(fileName);
+    }
+
+    /** Counts a loaded container using the path prefix, so the shared descriptors of the prefix are kept. */
+    void retainPrefix(String pathPrefix) {
+        prefixUseCounts.getAndIncrement(pathPrefix, 0, 1);
+    }
+
+    /** Forgets the shared descriptors of a path prefix once no loaded container uses it. */
+    void releasePrefix(String pathPrefix) {
+        if (prefixUseCounts.getAndIncrement(pathPrefix, 0, -1) > 1)
+            return;
+        prefixUseCounts.remove(pathPrefix, 0);
+        ObjectMap.Values<ObjectMap<String, AssetDescriptor<?>[]>> values = sharedDescriptors.values();
+        while (values.hasNext()) {
+            ObjectMap<String, AssetDescriptor<?>[]> descriptorsByPrefix = values.next();
+            descriptorsByPrefix.remove(pathPrefix);
+            if (descriptorsByPrefix.size == 0)
+                values.remove();
+        }
+    }
+
+    void clear() {
+        sharedDescriptors.clear();
+        internedDescriptors.clear();
+        prefixUseCounts.clear();
+    }
+}
@@ -0,0 +1,323 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import java.security.AccessControlException;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.loaders.ShaderProgramLoader;
+import com.badlogic.gdx.assets.loaders.TextureLoader;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.reflect.ArrayReflection;
+import com.badlogic.gdx.utils.reflect.ClassReflection;
+import com.badlogic.gdx.utils.reflect.Field;
+import com.badlogic.gdx.utils.reflect.ReflectionException;
+
+/**
+ * The {@link AssetBinder} used for container classes that have no generated binder. It holds the resolved asset
+ * annotations of a single container class, so the class only has to be reflected over once. Paths and generated
+ * parameters that depend on the container's path prefix are cached separately for each prefix that is used.
+ *
+ * @author cypherdare
+ */
+final class AssetFieldSchema implements AssetBinder<Object> {
+
+    private final Slot[] slots;
+    private final ObjectMap<String, PrefixedSlots> prefixedSlots = new ObjectMap<>();
+
+    private AssetFieldSchema(Slot[] slots) {
+        this.slots = slots;
+    }
+
+    static AssetFieldSchema create(Class<?> containerType) {
+        Field[] fields = ClassReflection.getDeclaredFields(containerType);
+        Array<Slot> slots = new Array<>(Slot.class);
+        for (Field field : fields) {
+            com.badlogic.gdx.utils.reflect.Annotation assetAnnotation = field.getDeclaredAnnotation(Asset.class);
+            com.badlogic.gdx.utils.reflect.Annotation shaderProgramAssetAnnotation = field.getDeclaredAnnotation(ShaderProgramAsset.class);
+            com.badlogic.gdx.utils.reflect.Annotation textureAssetAnnotation = field.getDeclaredAnnotation(TextureAsset.class);
+            com.badlogic.gdx.utils.reflect.Annotation assetsAnnotation = field.getDeclaredAnnotation(Assets.class);
+
+            if (assetAnnotation != null) {
+                Asset asset = assetAnnotation.getAnnotation(Asset.class);
+                Field parameterField = findParameterField(fields, asset.parameter(), field.getName());
+                slots.add(new Slot(field, -1, 0, getAssetType(field), asset.value(), parameterField, asset.parameter(), null, null));
+            } else if (shaderProgramAssetAnnotation != null) {
+                ShaderProgramAsset asset = shaderProgramAssetAnnotation.getAnnotation(ShaderProgramAsset.class);
+                slots.add(new Slot(field, -1, 0, getAssetType(field), asset.value(), null, null, null, asset));
+            } else if (textureAssetAnnotation != null) {
+                TextureAsset asset = textureAssetAnnotation.getAnnotation(TextureAsset.class);
+                slots.add(new Slot(field, -1, 0, getAssetType(field), asset.value(), null, null, generateParameter(asset), null));
+            } else if (assetsAnnotation != null) {
+                Class<?> assetType = field.getType().getComponentType();
+                if (assetType == null) {
+                    throw new GdxRuntimeException(String.format("@Assets may only be used with an array, and %s is not an array.", field.getName()));
+                }
+                if (assetType == AssetRef.class) {
+                    throw new GdxRuntimeException(String.format("@Assets cannot be used with an array of AssetRefs, and %s is one.", field.getName()));
+                }
+                Assets assets = assetsAnnotation.getAnnotation(Assets.class);
+                String[] fileNames = assets.value();
+                String[] parameters = assets.parameters();
+                if (parameters.length > 0 && parameters.length != fileNames.length)
+                    throw new GdxRuntimeException(String.format("For asset array %s, number of parameters does not match number of file name values.", field.getName()));
+                // No parameters array specified, check for single parameter. Use that or null for parameters
+                Field sharedParameterField = parameters.length > 0 ? null : findParameterField(fields, assets.parameter(), field.getName());
+                for (int i = 0; i < fileNames.length; i++) {
+                    String parameterName = parameters.length > 0 ? parameters[i] : assets.parameter();
+                    Field parameterField = parameters.length > 0 ?
+                            findParameterField(fields, parameterName, field.getName()) : sharedParameterField;
+                    slots.add(new Slot(field, i, fileNames.length, assetType, fileNames[i], parameterField, parameterName, null, null));
+                }
+            } else {
+                continue;
+            }
+            makeAccessible(field);
+        }
+        return new AssetFieldSchema(slots.toArray());
+    }
+
+    /** @return The asset type of a single asset field, which is the type argument of an {@link AssetRef} field. */
+    private static Class<?> getAssetType(Field field) {
+        if (field.getType() != AssetRef.class)
+            return field.getType();
+        Class<?> assetType = field.getElementType(0);
+        if (assetType == null)
+            throw new GdxRuntimeException(String.format("AssetRef field %s must declare its asset type.", field.getName()));
+        return assetType;
+    }
+
+    @Override
+    public int getSlotCount() {
+        return slots.length;
+    }
+
+    @Override
+    public Class<?> getAssetType(int slot) {
+        return slots[slot].assetType;
+    }
+
+    @Override
+    public boolean isAssigned(Object container, int slot) {
+        Field field = slots[slot].field;
+        try {
+            return field.get(container) != null;
+        } catch (ReflectionException e) {
+            throw new GdxRuntimeException("Cannot retrieve value of field " + field);
+        }
+    }
+
+    @Override
+    public AssetDescriptor<?> createDescriptor(Object container, String pathPrefix, int slot) {
+        Slot s = slots[slot];
+        PrefixedSlots prefixed = getPrefixedSlots(pathPrefix);
+        AssetLoaderParameters<?> parameter;
+        if (s.textureParameter != null)
+            parameter = s.textureParameter;
+        else if (s.shaderProgramAsset != null)
+            parameter = prefixed.shaderParameters[slot];
+        else
+            parameter = readParameter(container, s);
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        AssetDescriptor<?> assetDescriptor = new AssetDescriptor(prefixed.paths[slot], s.assetType, parameter);
+        return assetDescriptor;
+    }
+
+    @Override
+    public boolean isDescriptorShared(int slot) {
+        return slots[slot].parameterField == null;
+    }
+
+    @Override
+    public boolean isLazy(int slot) {
+        return slots[slot].lazy;
+    }
+
+    @Override
+    public void assign(Object container, int slot, Object asset) {
+        Slot s = slots[slot];
+        try {
+            if (s.index < 0) {
+                s.field.set(container, asset);
+                return;
+            }
+            Object[] array = (Object[]) s.field.get(container);
+            if (array == null) {
+                array = (Object[]) ArrayReflection.newInstance(s.assetType, s.arrayLength);
+                s.field.set(container, array);
+            }
+            array[s.index] = asset;
+        } catch (ReflectionException e) {
+            throw new GdxRuntimeException("Failed to assign loaded asset " + s.field.getName(), e);
+        }
+    }
+
+    @Override
+    public void clear(Object container, int slot) {
+        Field field = slots[slot].field;
+        try {
+            field.set(container, null);
+        } catch (ReflectionException e) {
+            throw new GdxRuntimeException("Failed to clear field " + field.getName(), e);
+        }
+    }
+
+    private PrefixedSlots getPrefixedSlots(String pathPrefix) {
+        PrefixedSlots prefixed = prefixedSlots.get(pathPrefix);
+        if (prefixed == null) {
+            prefixed = new PrefixedSlots(slots.length);
+            for (int i = 0; i < slots.length; i++) {
+                Slot s = slots[i];
+                prefixed.paths[i] = pathPrefix + s.path;
+                if (s.shaderProgramAsset != null)
+                    prefixed.shaderParameters[i] = generateParameter(pathPrefix, s.shaderProgramAsset);
+            }
+            prefixedSlots.put(pathPrefix, prefixed);
+        }
+        return prefixed;
+    }
+
+    private static AssetLoaderParameters<?> readParameter(Object container, Slot slot) {
+        if (slot.parameterField == null)
+            return null;
+        try {
+            AssetLoaderParameters<?> parameter = (AssetLoaderParameters<?>) slot.parameterField.get(
+                    slot.parameterField.isStatic() ? null : container);
+            if (parameter == null) {
+                throw new GdxRuntimeException(String.format("The specified parameter %s for asset %s cannot be null.", slot.parameterName, slot.field.getName()));
+            }
+            return parameter;
+        } catch (ReflectionException e) {
+            throw new GdxRuntimeException(String.format("Specified parameter %s for asset %s is not an AssetLoaderParameter.", slot.parameterName, slot.field.getName()), e);
+        } catch (ClassCastException e) {
+            throw new GdxRuntimeException(String.format("Specified parameter %s for asset %s is not an AssetLoaderParameter.", slot.parameterName, slot.field.getName()), e);
+        }
+    }
+
+    /**
+     * @return The field holding the AssetLoaderParameters of the given name, or null if the field name is "" or null.
+     * @throws GdxRuntimeException if the field does not exist.
+     */
+    private static Field findParameterField(Field[] containerFields, String parameterFieldName, String annotatedFieldName) {
+        if (parameterFieldName == null || parameterFieldName.equals(""))
+            return null;
+
+        if (parameterFieldName.contains(".")) { // assume fully qualified, statically accessed
+            int lastDotIndex = parameterFieldName.lastIndexOf(".");
+            String className = parameterFieldName.substring(0, lastDotIndex);
+            String fieldName = parameterFieldName.substring(lastDotIndex + 1);
+            try {
+                Class<?> parameterContainerClass = ClassReflection.forName(className);
+                Field parameterField = ClassReflection.getDeclaredField(parameterContainerClass, fieldName);
+                makeAccessible(parameterField);
+                return parameterField;
+            } catch (ReflectionException e) {
+                throw new GdxRuntimeException(String.format("Cannot retrieve parameter field %s of fully qualified class %s.", fieldName, className));
+            }
+        }
+
+        for (Field field : containerFields) {
+            if (field.getName().equals(parameterFieldName)) {
+                makeAccessible(field);
+                return field;
+            }
+        }
+        throw new GdxRuntimeException(String.format("The specified parameter %s for asset %s does not exist.", parameterFieldName, annotatedFieldName));
+    }
+
+    static void makeAccessible(Field field) {
+        if (!field.isAccessible()) {
+            try {
+                field.setAccessible(true);
+            } catch (AccessControlException ex) {
+                throw new GdxRuntimeException(String.format("Field %s cannot be made accessible", field.getName()));
+            }
+        }
+    }
+
+    static ShaderProgramLoader.ShaderProgramParameter generateParameter(String pathPrepend, ShaderProgramAsset asset) {
+        ShaderProgramLoader.ShaderProgramParameter parameter =
+                new ShaderProgramLoader.ShaderProgramParameter();
+        if (!asset.vertexFile().equals("")) {
+            parameter.vertexFile = pathPrepend + asset.vertexFile();
+        }
+        if (!asset.fragmentFile().equals("")) {
+            parameter.fragmentFile = pathPrepend + asset.fragmentFile();
+        }
+        parameter.logOnCompileFailure = asset.logOnCompileFailure;
+        String prependVertexCode = asset.prependAllCode() + asset.prependVertexCode();
+        if (!prependVertexCode.equals("")) {
+            parameter.prependVertexCode = prependVertexCode;
+        }
+        String prependFragmentCode = asset.prependAllCode() + asset.prependFragmentCode();
+        if (!prependFragmentCode.equals("")) {
+            parameter.prependFragmentCode = prependFragmentCode;
+        }
+        return parameter;
+    }
+
+    static TextureLoader.TextureParameter generateParameter(TextureAsset asset) {
+        TextureLoader.TextureParameter parameter = new TextureLoader.TextureParameter();
+        parameter.format = asset.format();
+        parameter.minFilter = asset.filter().minFilter;
+        parameter.magFilter = asset.filter().magFilter;
+        parameter.genMipMaps = asset.filter().usesMipMaps;
+        parameter.wrapU = parameter.wrapV = asset.wrap();
+        return parameter;
+    }
+
+    private static final class Slot {
+        final Field field;
+        /** Index into the array for {@link Assets} fields, or -1 for a single asset field. */
+        final int index;
+        final int arrayLength;
+        final Class<?> assetType;
+        final String path;
+        final Field parameterField;
+        final String parameterName;
+        final TextureLoader.TextureParameter textureParameter;
+        final ShaderProgramAsset shaderProgramAsset;
+        /** Whether the field is an {@link AssetRef}, which is assigned without loading its asset. */
+        final boolean lazy;
+
+        Slot(Field field, int index, int arrayLength, Class<?> assetType, String path, Field parameterField,
+             String parameterName, TextureLoader.TextureParameter textureParameter, ShaderProgramAsset shaderProgramAsset) {
+            this.field = field;
+            this.index = index;
+            this.arrayLength = arrayLength;
+            this.assetType = assetType;
+            this.path = path;
+            this.parameterField = parameterField;
+            this.parameterName = parameterName;
+            this.textureParameter = textureParameter;
+            this.shaderProgramAsset = shaderProgramAsset;
+            lazy = field.getType() == AssetRef.class;
+        }
+    }
+
+    private static final class PrefixedSlots {
+        final String[] paths;
+        final ShaderProgramLoader.ShaderProgramParameter[] shaderParameters;
+
+        PrefixedSlots(int slotCount) {
+            paths = new String[slotCount];
+            shaderParameters = new ShaderProgramLoader.ShaderProgramParameter[slotCount];
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * A handle to a loaded asset for fast repeated lookups, issued by
+ * {@link AssignmentAssetManager#getHandle(String, Class)}. Where {@link AssignmentAssetManager#get(String, Class)}
+ * hashes the file name and checks the type on every call, {@link #get()} is a read from an array slot that the
+ * AssetManager keeps up to date, suitable for fetching assets every frame.
+ * <p>
+ * A handle stays valid while its asset stays loaded, including while a texture is restored after a GL context loss or
+ * replaced by {@link AssetHotReloader}, in which case it returns the new instance. Once the asset is unloaded, the
+ * handle becomes permanently invalid, even if the asset is loaded again later, and a new handle must be obtained.
+ * Handles are meant to be used on the thread that updates the AssetManager.
+ *
+ * @param <T> The type of the asset.
+ * @author cypherdare
+ */
+public final class AssetHandle<T> {
+    private final AssignmentAssetManager assetManager;
+    private final String fileName;
+    private final Class<T> type;
+    final int index;
+    final int generation;
+
+    AssetHandle(AssignmentAssetManager assetManager, String fileName, Class<T> type, int index, int generation) {
+        this.assetManager = assetManager;
+        this.fileName = fileName;
+        this.type = type;
+        this.index = index;
+        this.generation = generation;
+    }
+
+    /**
+     * @return The asset.
+     * @throws GdxRuntimeException if the asset has been unloaded since this handle was issued.
+     */
+    @SuppressWarnings("unchecked")
+    public T get() {
+        Object asset = assetManager.getHandleAsset(index, generation);
+        if (asset == null)
+            throw new GdxRuntimeException(this + " is no longer valid because its asset was unloaded.");
+        return (T) asset;
+    }
+
+    /** @return Whether the asset is still loaded, so {@link #get()} can be called. */
+    public boolean isValid() {
+        return assetManager.getHandleAsset(index, generation) != null;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return "AssetHandle(" + fileName + ", " + type.getSimpleName() + ")";
+    }
+}
@@ -0,0 +1,373 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.AssetLoader;
+import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.ShaderProgramLoader;
+import com.badlogic.gdx.assets.loaders.SynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.TextureLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.ObjectSet;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Watches an asset directory on desktop and reloads the assets of an {@link AssignmentAssetManager} whose files change,
+ * for iterating on art and shaders while the application is running. Only the assets whose files changed are reloaded,
+ * and the application keeps rendering with the old versions until the new ones are ready. Changed images are read and
+ * decoded on a background thread. For other assets, only the asynchronous part of an {@link AsynchronousAssetLoader}
+ * runs on the background thread. The synchronous part, and all the work of a {@link SynchronousAssetLoader}, runs on
+ * the GL thread in {@link #update()}. For example, a ShaderProgram's files are read and compiled there.
+ * {@link #update()} must be called on the GL thread, typically once per frame, to apply finished reloads.
+ * <p>
+ * Textures are reloaded in place, so TextureRegions, atlases and fonts that use them stay valid. A change to an image that
+ * is a page of a TextureAtlas or BitmapFont therefore updates that atlas or font. ShaderPrograms are reloaded when their
+ * vertex or fragment file changes, and a program that fails to compile is discarded, keeping the previous version. Other
+ * assets without dependencies are replaced with a new instance, the fields referencing them are reassigned, and
+ * {@link AssetContainer#onAssetsLoaded()} is called again on the affected containers. Assets with dependencies, such as
+ * the description files of atlases, fonts, and models, are not reloaded.
+ * <p>
+ * This class uses {@link WatchService} and is not available on WebGL or Android.
+ *
+ * @author cypherdare
+ */
+public class AssetHotReloader implements Disposable {
+
+    private static final String TAG = "AssetHotReloader";
+    /** How long files must go without changing before they are reloaded, so partially written files are not read. */
+    private static final long SETTLE_NANOS = 200_000_000L;
+
+    private final AssignmentAssetManager assetManager;
+    private final WatchService watchService;
+    /** Only accessed by the watch thread after construction. */
+    private final ObjectMap<WatchKey, Path> watchedDirectories = new ObjectMap<>();
+    private final Thread watchThread;
+    /** Absolute paths of files that changed since the last reload, guarded by itself. */
+    private final ObjectSet<Path> changedPaths = new ObjectSet<>();
+    private long lastChangeTime;
+    /** Supplies loader instances that are not shared with the AssetManager's loading thread. */
+    private final AssetManager loaderSource;
+    private final AsyncExecutor executor;
+    private final Array<Reload> reloads = new Array<>();
+    private volatile boolean disposed;
+
+    /**
+     * Watches the application's internal files directory, which is the working directory on desktop.
+     *
+     * @param assetManager The AssignmentAssetManager whose assets are reloaded.
+     */
+    public AssetHotReloader(AssignmentAssetManager assetManager) {
+        this(assetManager, Gdx.files.internal(""));
+    }
+
+    /**
+     * @param assetManager    The AssignmentAssetManager whose assets are reloaded.
+     * @param assetsDirectory The directory containing the asset files. Its subdirectories are watched as well. Changed
+     *                        files are matched to assets by resolving the asset file names with the AssetManager's
+     *                        FileHandleResolver.
+     */
+    public AssetHotReloader(AssignmentAssetManager assetManager, FileHandle assetsDirectory) {
+        Application.ApplicationType applicationType = Gdx.app.getType();
+        if (applicationType != Application.ApplicationType.Desktop && applicationType != Application.ApplicationType.HeadlessDesktop)
+            throw new GdxRuntimeException("AssetHotReloader is only supported on desktop.");
+        File directory = assetsDirectory.file().getAbsoluteFile();
+        if (!directory.isDirectory())
+            throw new GdxRuntimeException("Assets directory does not exist: " + directory);
+        this.assetManager = assetManager;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            registerDirectory(directory);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not watch assets directory: " + directory, e);
+        }
+        loaderSource = new AssetManager(assetManager.getFileHandleResolver());
+        executor = new AsyncExecutor(1, TAG);
+        watchThread = new Thread(this::watch, TAG);
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    private void registerDirectory(File directory) throws IOException {
+        Path path = directory.toPath();
+        WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedDirectories.put(key, path);
+        File[] children = directory.listFiles();
+        if (children == null)
+            return;
+        for (File child : children) {
+            if (child.isDirectory())
+                registerDirectory(child);
+        }
+    }
+
+    private void watch() {
+        while (!disposed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (directory == null || event.kind() == StandardWatchEventKinds.OVERFLOW)
+                    continue;
+                Path path = directory.resolve((Path) event.context());
+                File file = path.toFile();
+                if (file.isDirectory()) {
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        try {
+                            registerDirectory(file);
+                        } catch (IOException | ClosedWatchServiceException e) {
+                            Gdx.app.error(TAG, "Could not watch new directory " + path, e);
+                        }
+                    }
+                    continue;
+                }
+                synchronized (changedPaths) {
+                    changedPaths.add(path.normalize());
+                    lastChangeTime = System.nanoTime();
+                }
+            }
+            if (!key.reset())
+                watchedDirectories.remove(key);
+        }
+    }
+
+    /**
+     * Starts reloading the assets whose files have changed, and applies reloads that have finished. Must be called on
+     * the GL thread.
+     *
+     * @return Whether any assets were reloaded during this call.
+     */
+    public boolean update() {
+        Array<Path> paths = null;
+        synchronized (changedPaths) {
+            if (changedPaths.size > 0 && System.nanoTime() - lastChangeTime > SETTLE_NANOS) {
+                paths = changedPaths.iterator().toArray();
+                changedPaths.clear();
+            }
+        }
+        if (paths != null) {
+            for (String assetName : assetManager.getAssetNames()) {
+                Class<?> type = assetManager.getAssetType(assetName);
+                if (isAffected(assetName, type, paths))
+                    startReload(assetName, type);
+            }
+        }
+
+        boolean reloaded = false;
+        for (int i = reloads.size - 1; i >= 0; i--) {
+            Reload reload = reloads.get(i);
+            if (reload.result.isDone()) {
+                reloads.removeIndex(i);
+                reloaded |= finishReload(reload);
+            }
+        }
+        return reloaded;
+    }
+
+    private boolean isAffected(String assetName, Class<?> type, Array<Path> paths) {
+        if (paths.contains(toPath(assetName), false))
+            return true;
+        if (type != ShaderProgram.class)
+            return false;
+        AssetDescriptor<?> descriptor = assetManager.findContainerDescriptor(assetName);
+        if (descriptor != null && descriptor.params instanceof ShaderProgramLoader.ShaderProgramParameter) {
+            ShaderProgramLoader.ShaderProgramParameter parameter = (ShaderProgramLoader.ShaderProgramParameter) descriptor.params;
+            if (parameter.vertexFile != null && paths.contains(toPath(parameter.vertexFile), false))
+                return true;
+            if (parameter.fragmentFile != null && paths.contains(toPath(parameter.fragmentFile), false))
+                return true;
+        }
+        // The ShaderProgramLoader finds the other file of a program by swapping the .vert and .frag suffixes.
+        if (assetName.endsWith(".vert"))
+            return paths.contains(toPath(assetName.substring(0, assetName.length() - 5) + ".frag"), false);
+        if (assetName.endsWith(".frag"))
+            return paths.contains(toPath(assetName.substring(0, assetName.length() - 5) + ".vert"), false);
+        return false;
+    }
+
+    private Path toPath(String fileName) {
+        return assetManager.getFileHandleResolver().resolve(fileName).file().getAbsoluteFile().toPath().normalize();
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"}) // the loader and parameter types are only known at runtime
+    private void startReload(final String fileName, final Class<?> type) {
+        for (Reload reload : reloads) {
+            if (reload.fileName.equals(fileName))
+                return;
+        }
+        AssetDescriptor<?> descriptor = assetManager.findContainerDescriptor(fileName);
+        final AssetLoaderParameters parameter = descriptor == null ? null : descriptor.params;
+        final FileHandle file = assetManager.getFileHandleResolver().resolve(fileName);
+
+        if (type == Texture.class) {
+            TextureLoader.TextureParameter textureParameter = (TextureLoader.TextureParameter) parameter;
+            if (textureParameter != null && textureParameter.textureData != null) {
+                Gdx.app.error(TAG, "Cannot reload " + fileName + " because it was loaded with supplied TextureData.");
+                return;
+            }
+            TextureData currentData = assetManager.get(fileName, Texture.class).getTextureData();
+            final Pixmap.Format format = textureParameter == null ? currentData.getFormat() : textureParameter.format;
+            final boolean genMipMaps = textureParameter == null ? currentData.useMipMaps() : textureParameter.genMipMaps;
+            AssetLoader<?, ?> loader = assetManager.getUntracedLoader(Texture.class, fileName);
+            final TextureDataFactory factory = loader instanceof TextureDataFactory ? (TextureDataFactory) loader : null;
+            reloads.add(new Reload(fileName, null, executor.submit(() -> {
+                TextureData data = factory == null ? TextureData.Factory.loadFromFile(file, format, genMipMaps)
+                        : factory.createTextureData(file, format, genMipMaps);
+                if (!data.isPrepared())
+                    data.prepare();
+                return data;
+            })));
+            return;
+        }
+
+        final AssetLoader loader = loaderSource.getLoader(type, fileName);
+        AssetLoader<?, ?> managerLoader = assetManager.getUntracedLoader(type, fileName);
+        if (loader == null || managerLoader == null || loader.getClass() != managerLoader.getClass()) {
+            Gdx.app.error(TAG, "Cannot reload " + fileName + " because it does not use a default loader.");
+            return;
+        }
+        reloads.add(new Reload(fileName, loader, executor.submit(() -> {
+            Array<?> dependencies = loader.getDependencies(fileName, file, parameter);
+            if (dependencies != null && dependencies.size > 0)
+                return Boolean.FALSE;
+            if (loader instanceof AsynchronousAssetLoader)
+                ((AsynchronousAssetLoader) loader).loadAsync(assetManager, fileName, file, parameter);
+            return Boolean.TRUE;
+        })));
+    }
+
+    /** @return Whether the asset was reloaded. */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private boolean finishReload(Reload reload) {
+        String fileName = reload.fileName;
+        Object result;
+        try {
+            result = reload.result.get();
+        } catch (GdxRuntimeException e) {
+            Gdx.app.error(TAG, "Could not reload " + fileName, e);
+            return false;
+        }
+        Class<?> type = reload.loader == null ? Texture.class : assetManager.getAssetType(fileName);
+        if (type == null || !assetManager.isLoaded(fileName, type)) {
+            // unloaded while reloading
+            if (reload.loader == null)
+                ParallelTextureDecoder.discard((TextureData) result);
+            return false;
+        }
+
+        if (reload.loader == null) {
+            Texture texture = assetManager.get(fileName, Texture.class);
+            assetManager.releaseRestoreSource(texture);
+            assetManager.cancelSlicedUpload(fileName);
+            texture.load((TextureData) result);
+            Gdx.app.log(TAG, "Reloaded " + fileName);
+            return true;
+        }
+
+        if (result != Boolean.TRUE) {
+            Gdx.app.error(TAG, "Cannot reload " + fileName + " because it has dependencies.");
+            return false;
+        }
+        AssetDescriptor<?> descriptor = assetManager.findContainerDescriptor(fileName);
+        AssetLoaderParameters parameter = descriptor == null ? null : descriptor.params;
+        FileHandle file = assetManager.getFileHandleResolver().resolve(fileName);
+        Object asset;
+        try {
+            if (reload.loader instanceof SynchronousAssetLoader)
+                asset = ((SynchronousAssetLoader) reload.loader).load(assetManager, fileName, file, parameter);
+            else
+                asset = ((AsynchronousAssetLoader) reload.loader).loadSync(assetManager, fileName, file, parameter);
+        } catch (GdxRuntimeException e) {
+            Gdx.app.error(TAG, "Could not reload " + fileName, e);
+            return false;
+        }
+        if (asset instanceof ShaderProgram && !((ShaderProgram) asset).isCompiled()) {
+            Gdx.app.error(TAG, "Shader " + fileName + " has errors and was not reloaded:\n" + ((ShaderProgram) asset).getLog());
+            ((ShaderProgram) asset).dispose();
+            return false;
+        }
+        assetManager.replaceAsset(fileName, asset);
+        Gdx.app.log(TAG, "Reloaded " + fileName);
+        return true;
+    }
+
+    /**
+     * Stops watching for changes. Reloads in progress are abandoned.
+     */
+    @Override
+    public void dispose() {
+        disposed = true;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            Gdx.app.error(TAG, "Could not close watch service", e);
+        }
+        watchThread.interrupt();
+        executor.dispose();
+        for (Reload reload : reloads) {
+            if (reload.loader == null) {
+                try {
+                    ParallelTextureDecoder.discard((TextureData) reload.result.get());
+                } catch (GdxRuntimeException ignored) {
+                }
+            }
+        }
+        reloads.clear();
+        loaderSource.dispose();
+    }
+
+    private static final class Reload {
+        final String fileName;
+        /** The loader that finishes the reload on the GL thread, or null for a Texture reloaded in place. */
+        final AssetLoader<?, ?> loader;
+        /** The prepared TextureData for a Texture, or whether the asset can be finished by the loader. */
+        final AsyncResult<Object> result;
+
+        @SuppressWarnings("unchecked")
+        Reload(String fileName, AssetLoader<?, ?> loader, AsyncResult<?> result) {
+            this.fileName = fileName;
+            this.loader = loader;
+            this.result = (AsyncResult<Object>) result;
+        }
+    }
+}
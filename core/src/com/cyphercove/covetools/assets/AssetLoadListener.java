@@ -0,0 +1,31 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+/**
+ * Receives the measurements of each asset that finishes loading while load tracing is enabled on an
+ * {@link AssignmentAssetManager}.
+ *
+ * @author cypherdare
+ */
+public interface AssetLoadListener {
+    /**
+     * Called on the rendering thread when an asset has finished loading, during {@link AssignmentAssetManager#update()}.
+     *
+     * @param trace The measurements of the loaded asset.
+     */
+    void onAssetLoaded (AssetLoadTrace trace);
+}
@@ -0,0 +1,97 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+/**
+ * Timing and size measurements of loading a single asset, recorded by {@link AssignmentAssetManager} while load tracing
+ * is enabled. All times are in nanoseconds.
+ *
+ * @author cypherdare
+ */
+public final class AssetLoadTrace {
+    private final String fileName;
+    private final Class<?> type;
+    private final Object container;
+    private final long requestTime;
+    long startTime;
+    long asyncNanos;
+    long syncNanos;
+    long fileBytes;
+    long finishTime;
+
+    AssetLoadTrace(String fileName, Class<?> type, Object container, long requestTime) {
+        this.fileName = fileName;
+        this.type = type;
+        this.container = container;
+        this.requestTime = requestTime;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return The container that first requested the asset, or null if it was loaded directly or is a dependency of an
+     * asset loaded directly. Dependencies of container assets are attributed to the same container.
+     */
+    public Object getContainer() {
+        return container;
+    }
+
+    /** @return The time between the asset being requested and its loading starting. */
+    public long getQueueWaitNanos() {
+        return startTime - requestTime;
+    }
+
+    /**
+     * @return The time spent on the asset off the rendering thread, including finding its dependencies and decoding
+     * its texture data ahead of loading.
+     */
+    public long getAsyncLoadNanos() {
+        return asyncNanos;
+    }
+
+    /** @return The time spent loading the asset on the rendering thread, usually uploading it to the GPU. */
+    public long getSyncLoadNanos() {
+        return syncNanos;
+    }
+
+    /** @return The time spent loading the asset, excluding its queue wait. */
+    public long getLoadNanos() {
+        return asyncNanos + syncNanos;
+    }
+
+    /** @return The time between the asset being requested and it finishing loading. */
+    public long getTotalNanos() {
+        return finishTime - requestTime;
+    }
+
+    /** @return The size of the asset's file, not including the files of its dependencies. */
+    public long getFileBytes() {
+        return fileBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s): load %.2f ms (async %.2f ms, sync %.2f ms), queue wait %.2f ms, %d bytes",
+                fileName, type.getSimpleName(), getLoadNanos() / 1000000f, asyncNanos / 1000000f, syncNanos / 1000000f,
+                getQueueWaitNanos() / 1000000f, fileBytes);
+    }
+}
@@ -0,0 +1,231 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.AssetLoader;
+import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.SynchronousAssetLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Records {@link AssetLoadTrace}s for {@link AssignmentAssetManager} by wrapping its asset loaders in loaders that time
+ * each stage. The asynchronous stages run on the AssetManager's loading thread, so all methods are synchronized.
+ *
+ * @author cypherdare
+ */
+final class AssetLoadTracer {
+
+    private final ObjectMap<AssetLoader<?, ?>, AssetLoader<?, ?>> wrappedLoaders = new ObjectMap<>();
+    /** Traces of assets that have been requested but have not finished loading. */
+    private final ObjectMap<String, AssetLoadTrace> activeTraces = new ObjectMap<>();
+    private final Array<AssetLoadTrace> finishedTraces = new Array<>();
+    AssetLoadListener listener;
+
+    /** @return A loader that records traces and otherwise behaves like the given loader. */
+    synchronized <T, P extends AssetLoaderParameters<T>> AssetLoader<T, P> wrap(AssetLoader<T, P> loader, Class<T> type) {
+        @SuppressWarnings("unchecked") // only ever mapped to a wrapper of the same loader
+        AssetLoader<T, P> wrapped = (AssetLoader<T, P>) wrappedLoaders.get(loader);
+        if (wrapped == null) {
+            if (loader instanceof AsynchronousAssetLoader)
+                wrapped = new TracingAsynchronousLoader<>(this, (AsynchronousAssetLoader<T, P>) loader, type);
+            else if (loader instanceof SynchronousAssetLoader)
+                wrapped = new TracingSynchronousLoader<>(this, (SynchronousAssetLoader<T, P>) loader, type);
+            else
+                return loader;
+            wrappedLoaders.put(loader, wrapped);
+        }
+        return wrapped;
+    }
+
+    /** Starts the trace of an asset when it is requested, unless it is already being traced. */
+    synchronized void request(String fileName, Class<?> type, Object container) {
+        if (!activeTraces.containsKey(fileName))
+            activeTraces.put(fileName, new AssetLoadTrace(fileName, type, container, TimeUtils.nanoTime()));
+    }
+
+    /** Marks the start of loading work on an asset, and measures its file the first time. */
+    synchronized AssetLoadTrace start(String fileName, Class<?> type, FileHandle file) {
+        AssetLoadTrace trace = activeTraces.get(fileName);
+        if (trace == null) { // loaded without being requested through the AssignmentAssetManager
+            trace = new AssetLoadTrace(fileName, type, null, TimeUtils.nanoTime());
+            activeTraces.put(fileName, trace);
+        }
+        if (trace.startTime == 0) {
+            trace.startTime = TimeUtils.nanoTime();
+            if (file != null)
+                trace.fileBytes = fileLength(file);
+        }
+        return trace;
+    }
+
+    private static long fileLength(FileHandle file) {
+        try {
+            return file.length();
+        } catch (GdxRuntimeException e) {
+            return 0;
+        }
+    }
+
+    synchronized void addAsyncTime(AssetLoadTrace trace, long startNanos) {
+        trace.asyncNanos += TimeUtils.nanoTime() - startNanos;
+    }
+
+    synchronized void addSyncTime(AssetLoadTrace trace, long startNanos) {
+        trace.syncNanos += TimeUtils.nanoTime() - startNanos;
+    }
+
+    /** Attributes the dependencies of an asset to the asset's container, and starts their queue wait. */
+    synchronized void requestDependencies(AssetLoadTrace parent, Array<?> dependencies) {
+        if (dependencies == null)
+            return;
+        for (Object dependency : dependencies) {
+            AssetDescriptor<?> descriptor = (AssetDescriptor<?>) dependency;
+            request(descriptor.fileName, descriptor.type, parent.getContainer());
+        }
+    }
+
+    /** Completes a trace after its asset was loaded, and notifies the listener. */
+    void finish(AssetLoadTrace trace) {
+        AssetLoadListener listener;
+        synchronized (this) {
+            trace.finishTime = TimeUtils.nanoTime();
+            if (activeTraces.get(trace.getFileName()) == trace)
+                activeTraces.remove(trace.getFileName());
+            finishedTraces.add(trace);
+            listener = this.listener;
+        }
+        if (listener != null)
+            listener.onAssetLoaded(trace);
+    }
+
+    /** Stops tracing an asset that was unloaded, in case it had not finished loading. */
+    synchronized void cancel(String fileName) {
+        activeTraces.remove(fileName);
+    }
+
+    synchronized Array<AssetLoadTrace> getFinishedTraces(Array<AssetLoadTrace> out) {
+        out.addAll(finishedTraces);
+        return out;
+    }
+
+    synchronized void clearFinishedTraces() {
+        finishedTraces.clear();
+    }
+
+    synchronized void clearActiveTraces() {
+        activeTraces.clear();
+    }
+
+    private static final class TracingAsynchronousLoader<T, P extends AssetLoaderParameters<T>> extends AsynchronousAssetLoader<T, P> {
+        private final AssetLoadTracer tracer;
+        private final AsynchronousAssetLoader<T, P> loader;
+        private final Class<T> type;
+
+        TracingAsynchronousLoader(AssetLoadTracer tracer, AsynchronousAssetLoader<T, P> loader, Class<T> type) {
+            super(null);
+            this.tracer = tracer;
+            this.loader = loader;
+            this.type = type;
+        }
+
+        @Override
+        public FileHandle resolve(String fileName) {
+            return loader.resolve(fileName);
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes") // as declared by AssetLoader
+        public Array<AssetDescriptor> getDependencies(String fileName, FileHandle file, P parameter) {
+            AssetLoadTrace trace = tracer.start(fileName, type, file);
+            long startTime = TimeUtils.nanoTime();
+            Array<AssetDescriptor> dependencies = loader.getDependencies(fileName, file, parameter);
+            tracer.addAsyncTime(trace, startTime);
+            tracer.requestDependencies(trace, dependencies);
+            return dependencies;
+        }
+
+        @Override
+        public void loadAsync(AssetManager manager, String fileName, FileHandle file, P parameter) {
+            AssetLoadTrace trace = tracer.start(fileName, type, file);
+            long startTime = TimeUtils.nanoTime();
+            loader.loadAsync(manager, fileName, file, parameter);
+            tracer.addAsyncTime(trace, startTime);
+        }
+
+        @Override
+        public void unloadAsync(AssetManager manager, String fileName, FileHandle file, P parameter) {
+            loader.unloadAsync(manager, fileName, file, parameter);
+        }
+
+        @Override
+        public T loadSync(AssetManager manager, String fileName, FileHandle file, P parameter) {
+            AssetLoadTrace trace = tracer.start(fileName, type, file);
+            long startTime = TimeUtils.nanoTime();
+            T asset = loader.loadSync(manager, fileName, file, parameter);
+            tracer.addSyncTime(trace, startTime);
+            if (asset != null)
+                tracer.finish(trace);
+            return asset;
+        }
+    }
+
+    private static final class TracingSynchronousLoader<T, P extends AssetLoaderParameters<T>> extends SynchronousAssetLoader<T, P> {
+        private final AssetLoadTracer tracer;
+        private final SynchronousAssetLoader<T, P> loader;
+        private final Class<T> type;
+
+        TracingSynchronousLoader(AssetLoadTracer tracer, SynchronousAssetLoader<T, P> loader, Class<T> type) {
+            super(null);
+            this.tracer = tracer;
+            this.loader = loader;
+            this.type = type;
+        }
+
+        @Override
+        public FileHandle resolve(String fileName) {
+            return loader.resolve(fileName);
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes") // as declared by AssetLoader
+        public Array<AssetDescriptor> getDependencies(String fileName, FileHandle file, P parameter) {
+            AssetLoadTrace trace = tracer.start(fileName, type, file);
+            long startTime = TimeUtils.nanoTime();
+            Array<AssetDescriptor> dependencies = loader.getDependencies(fileName, file, parameter);
+            tracer.addSyncTime(trace, startTime);
+            tracer.requestDependencies(trace, dependencies);
+            return dependencies;
+        }
+
+        @Override
+        public T load(AssetManager assetManager, String fileName, FileHandle file, P parameter) {
+            AssetLoadTrace trace = tracer.start(fileName, type, file);
+            long startTime = TimeUtils.nanoTime();
+            T asset = loader.load(assetManager, fileName, file, parameter);
+            tracer.addSyncTime(trace, startTime);
+            if (asset != null)
+                tracer.finish(trace);
+            return asset;
+        }
+    }
+}
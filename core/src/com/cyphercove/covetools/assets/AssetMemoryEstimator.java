@@ -0,0 +1,174 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.graphics.Cubemap;
+import com.badlogic.gdx.graphics.GLTexture;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.g3d.Attribute;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.attributes.TextureAttribute;
+import com.badlogic.gdx.graphics.glutils.GLFrameBuffer;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.utils.ObjectSet;
+
+/**
+ * Estimates the memory held by loaded assets, from the dimensions and formats of their images. The estimates do not
+ * account for padding or compression done by the driver. GPU memory is estimated separately, by collecting the GL
+ * objects an asset holds, so objects shared between assets can be counted once.
+ *
+ * @author cypherdare
+ */
+final class AssetMemoryEstimator {
+
+    private AssetMemoryEstimator() {
+    }
+
+    /** @return The estimated number of bytes held by the asset, or 0 if its type is not known. */
+    static long estimateBytes(Object asset) {
+        if (asset instanceof Texture)
+            return estimateBytes((Texture) asset);
+        if (asset instanceof TextureAtlas) {
+            long bytes = 0;
+            for (Texture texture : ((TextureAtlas) asset).getTextures())
+                bytes += estimateBytes(texture);
+            return bytes;
+        }
+        if (asset instanceof BitmapFont) {
+            ObjectSet<Texture> textures = new ObjectSet<>();
+            for (TextureRegion region : ((BitmapFont) asset).getRegions())
+                textures.add(region.getTexture());
+            long bytes = 0;
+            for (Texture texture : textures)
+                bytes += estimateBytes(texture);
+            return bytes;
+        }
+        if (asset instanceof Pixmap) {
+            Pixmap pixmap = (Pixmap) asset;
+            return (long) pixmap.getWidth() * pixmap.getHeight() * getBytesPerPixel(pixmap.getFormat());
+        }
+        return 0;
+    }
+
+    static long estimateBytes(Texture texture) {
+        long bytes = (long) texture.getWidth() * texture.getHeight() * getBytesPerPixel(texture.getTextureData().getFormat());
+        if (texture.getMinFilter().isMipMap())
+            bytes = bytes * 4 / 3;
+        return bytes;
+    }
+
+    /**
+     * Adds the GL objects held by the asset whose GPU memory can be estimated: textures, shader programs, frame
+     * buffers and meshes, including those of texture atlases, bitmap fonts, skins and models.
+     */
+    static void collectGpuObjects(Object asset, ObjectSet<Object> objects) {
+        if (asset instanceof GLTexture || asset instanceof ShaderProgram || asset instanceof Mesh) {
+            objects.add(asset);
+        } else if (asset instanceof GLFrameBuffer) {
+            objects.add(asset);
+            for (GLTexture texture : ((GLFrameBuffer<?>) asset).getTextureAttachments())
+                objects.add(texture);
+        } else if (asset instanceof TextureAtlas) {
+            for (Texture texture : ((TextureAtlas) asset).getTextures())
+                objects.add(texture);
+        } else if (asset instanceof BitmapFont) {
+            for (TextureRegion region : ((BitmapFont) asset).getRegions())
+                objects.add(region.getTexture());
+        } else if (asset instanceof Skin) {
+            Skin skin = (Skin) asset;
+            if (skin.getAtlas() != null)
+                collectGpuObjects(skin.getAtlas(), objects);
+            for (BitmapFont font : skin.getAll(BitmapFont.class).values())
+                collectGpuObjects(font, objects);
+        } else if (asset instanceof Model) {
+            Model model = (Model) asset;
+            for (Mesh mesh : model.meshes)
+                objects.add(mesh);
+            for (Material material : model.materials) {
+                for (Attribute attribute : material) {
+                    if (attribute instanceof TextureAttribute && ((TextureAttribute) attribute).textureDescription.texture != null)
+                        objects.add(((TextureAttribute) attribute).textureDescription.texture);
+                }
+            }
+        }
+    }
+
+    /** @return The total estimated GPU memory of GL objects gathered by {@link #collectGpuObjects(Object, ObjectSet)}. */
+    static long estimateGpuBytes(ObjectSet<Object> objects) {
+        long bytes = 0;
+        for (Object object : objects)
+            bytes += estimateGpuBytes(object);
+        return bytes;
+    }
+
+    /**
+     * @return The estimated GPU memory of a single GL object. Textures count their base level, plus a third for mip
+     * maps. Frame buffers count only their depth and stencil buffers, and shader programs the length of their source
+     * code as a rough stand-in for their compiled size.
+     */
+    static long estimateGpuBytes(Object object) {
+        if (object instanceof Texture)
+            return estimateBytes((Texture) object);
+        if (object instanceof GLTexture) {
+            GLTexture texture = (GLTexture) object;
+            long bytes = (long) texture.getWidth() * texture.getHeight() * Math.max(1, texture.getDepth()) * 4;
+            if (texture instanceof Cubemap)
+                bytes *= 6;
+            if (texture.getMinFilter().isMipMap())
+                bytes = bytes * 4 / 3;
+            return bytes;
+        }
+        if (object instanceof GLFrameBuffer) {
+            GLFrameBuffer<?> frameBuffer = (GLFrameBuffer<?>) object;
+            int bytesPerPixel = (frameBuffer.getDepthBufferHandle() != 0 ? 4 : 0) + (frameBuffer.getStencilBufferHandle() != 0 ? 1 : 0);
+            return (long) frameBuffer.getWidth() * frameBuffer.getHeight() * bytesPerPixel;
+        }
+        if (object instanceof Mesh) {
+            Mesh mesh = (Mesh) object;
+            return (long) mesh.getNumVertices() * mesh.getVertexSize() + mesh.getNumIndices() * 2L;
+        }
+        if (object instanceof ShaderProgram) {
+            ShaderProgram shader = (ShaderProgram) object;
+            return shader.getVertexShaderSource().length() + shader.getFragmentShaderSource().length();
+        }
+        return 0;
+    }
+
+    static int getBytesPerPixel(Pixmap.Format format) {
+        if (format == null)
+            return 4;
+        switch (format) {
+            case Alpha:
+            case Intensity:
+                return 1;
+            case LuminanceAlpha:
+            case RGB565:
+            case RGBA4444:
+                return 2;
+            case RGB888:
+                return 3;
+            default:
+                return 4;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+
+/**
+ * A reference to an asset that is not loaded until it is first needed. Declaring an asset field of a container as an
+ * AssetRef, for example {@code @Asset("theme.png") AssetRef<Texture> theme}, makes {@link AssignmentAssetManager}
+ * assign the reference as soon as the container is queued, without loading its asset. The asset is queued for
+ * asynchronous loading the first time {@link #get()} or {@link #request()} is called, with the container's priority,
+ * and is loaded by subsequent calls to {@link AssignmentAssetManager#update()}. The container's other assets and its
+ * {@link AssetContainer#onAssetsLoaded()} callback never wait for it.
+ * <p>
+ * Unloading the container releases the asset if it was requested, and nulls the field. A reference can also be
+ * returned to its unloaded state with {@link #release()}.
+ *
+ * @param <T> The type of the asset.
+ * @author cypherdare
+ */
+public final class AssetRef<T> {
+    private final AssignmentAssetManager assetManager;
+    private final AssetDescriptor<T> descriptor;
+    final Object container;
+    final int priority;
+    /** Whether the asset is referenced by the AssetManager on behalf of this reference. Guarded by the AssetManager. */
+    boolean requested;
+    /** Whether the container was unloaded, so the reference can no longer be requested. Guarded by the AssetManager. */
+    boolean detached;
+
+    AssetRef(AssignmentAssetManager assetManager, AssetDescriptor<T> descriptor, Object container, int priority) {
+        this.assetManager = assetManager;
+        this.descriptor = descriptor;
+        this.container = container;
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the asset if it is loaded. Otherwise requests it if it has not been requested yet, and returns null.
+     * Never blocks.
+     *
+     * @return The asset, or null if it is not loaded yet.
+     * @throws com.badlogic.gdx.utils.GdxRuntimeException if the container of this reference has been unloaded.
+     */
+    public T get() {
+        return assetManager.getAssetRef(this);
+    }
+
+    /**
+     * Queues the asset for loading if it has not been requested yet. Never blocks.
+     *
+     * @throws com.badlogic.gdx.utils.GdxRuntimeException if the container of this reference has been unloaded.
+     */
+    public void request() {
+        assetManager.requestAssetRef(this);
+    }
+
+    /** @return Whether the asset has been requested and is fully loaded. */
+    public boolean isLoaded() {
+        synchronized (assetManager) {
+            return requested && assetManager.isAssetReady(descriptor.fileName, descriptor.type);
+        }
+    }
+
+    /** @return Whether the asset has been requested and not released since. */
+    public boolean isRequested() {
+        synchronized (assetManager) {
+            return requested;
+        }
+    }
+
+    /**
+     * Releases the asset if it was requested, unloading it if nothing else references it. The asset can be requested
+     * again later.
+     */
+    public void release() {
+        assetManager.releaseAssetRef(this);
+    }
+
+    public String getFileName() {
+        return descriptor.fileName;
+    }
+
+    public Class<T> getType() {
+        return descriptor.type;
+    }
+
+    AssetDescriptor<T> getDescriptor() {
+        return descriptor;
+    }
+
+    @Override
+    public String toString() {
+        return "AssetRef(" + descriptor.fileName + ", " + descriptor.type.getSimpleName() + ")";
+    }
+}
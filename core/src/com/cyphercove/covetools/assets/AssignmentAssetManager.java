@@ -15,88 +15,1414 @@
  ******************************************************************************/
 package com.cyphercove.covetools.assets;
 
-import java.lang.reflect.Array;
-import java.security.AccessControlException;
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.loaders.AssetLoader;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.TextureLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.badlogic.gdx.utils.ObjectLongMap;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.ObjectSet;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+import com.badlogic.gdx.utils.async.AsyncTask;
+import com.badlogic.gdx.utils.async.ThreadUtils;
+import com.badlogic.gdx.utils.reflect.ClassReflection;
+import com.badlogic.gdx.utils.reflect.Field;
+import com.badlogic.gdx.utils.reflect.ReflectionException;
+
+/**
+ * An AssetManager that can load and automatically populate annotated fields for assets in an asset container
+ * class. Fields of a class can be annotated with {@link Asset} or {@link Assets} (for arrays of assets) to specify
+ * their paths. They can be queued for loading by passing an instance of the containing class using
+ * {@link AssignmentAssetManager#loadAssetFields(Object)}. As soon as all the assets of a container are loaded, references
+ * to them are automatically populated on the container class, even if assets of other containers are still loading.
+ * <p>
+ * All annotated assets of a container class can be unloaded by calling {@link AssignmentAssetManager#unloadAssetFields(Object)}.
+ * This unloads these assets and nulls their fields in the container class. If an asset is still referenced in another loaded
+ * container, it will not be unloaded. The number of containers referencing each asset is tracked as containers are loaded
+ * and unloaded, so unloading a container only costs time proportional to its own number of assets. Assets that are no
+ * longer referenced can be kept loaded for reuse within a memory budget set with {@link #setRetentionBudget(long)}.
+ *
+ * @author cypherdare
+ */
+public class AssignmentAssetManager extends AssetManager {
+
+    private final ObjectSet<Object> queuedContainers = new ObjectSet<Object>();
+    private final ObjectSet<Object> loadedContainers = new ObjectSet<Object>();
+    private final ObjectMap<Object, ContainerRecord> containerRecords = new ObjectMap<>();
+    private final ObjectMap<Class<?>, AssetBinder<?>> binders = new ObjectMap<>();
+    private final ObjectIntMap<String> assetReferenceCounts = new ObjectIntMap<>();
+    private final Array<ContainerRecord> readyRecords = new Array<>();
+    /** Container load and unload requests posted from any thread, applied at the start of the next update. */
+    private final ContainerRequestQueue postedRequests = new ContainerRequestQueue();
+    /** Containers whose fields are assigned, being processed in the background before they are notified. */
+    private final Array<ContainerRecord> processingRecords = new Array<>();
+    private AsyncExecutor processingExecutor;
+    private final PendingAssetQueue pendingAssets = new PendingAssetQueue();
+    private final AssetDescriptorCache descriptorCache = new AssetDescriptorCache();
+    /** The number of assets passed through {@link #pendingAssets} since it was last empty, for progress reporting. */
+    private int scheduledAssetCount;
+    /** The known file sizes of the assets counted by {@link #scheduledAssetCount}, for byte-weighted progress. */
+    private long scheduledFileBytes;
+    /** The known file size of the asset last passed to the AssetManager, until it is loaded. */
+    private long dispatchedFileBytes;
+    private ParallelTextureDecoder textureDecoder;
+    /** Assets removed while their decodes were queued or running, waiting to finish so their data can be freed. */
+    private final Array<PendingAssetQueue.PendingAsset> abandonedDecodes = new Array<>();
+    private final RetainedAssetCache retainedAssets = new RetainedAssetCache();
+    private long retentionBudget;
+    /** The highest priority of the containers referencing each asset, for ordering context restores. */
+    private final ObjectIntMap<String> assetPriorities = new ObjectIntMap<>();
+    private final RestorableTextureData.SourceBudget restoreSources = new RestorableTextureData.SourceBudget();
+    /** The number of textures queued for restoring since the last context loss, and how many of them are done. */
+    private int restoreCount;
+    private int restoredCount;
+    /** Container textures whose storage is allocated but whose rows are still being uploaded across updates. */
+    private final ObjectMap<String, SlicedTextureData> slicedUploads = new ObjectMap<>();
+    private int textureUploadBudget;
+    private final DirectBufferPool decodeBuffers = new DirectBufferPool();
+    private final ParallelTextureDecoder.InFlightBytes inFlightBytes = new ParallelTextureDecoder.InFlightBytes();
+    private long inFlightLimit;
+    /** The decoded bytes of the parallel decoded texture last passed to the AssetManager, until it is loaded. */
+    private long dispatchedBytes;
+    /** The assets of issued handles by slot, and the generation of each slot, which changes when it is invalidated. */
+    private Object[] handleAssets = new Object[16];
+    private int[] handleGenerations = new int[16];
+    private final ObjectIntMap<String> handleIndices = new ObjectIntMap<>();
+    private final ObjectMap<String, AssetHandle<?>> handles = new ObjectMap<>();
+    private final IntArray freeHandleIndices = new IntArray();
+    private int handleCount;
+    private PreloadHistory preloadHistory;
+    /** Decodes started from the preload history before their assets were requested, by file name. */
+    private final ObjectMap<String, PendingAssetQueue.PendingAsset> prefetches = new ObjectMap<>();
+    private int prefetchHitCount;
+    /** The asset last passed to the AssetManager and when, for recording its load time in the preload history. */
+    private String dispatchedFileName;
+    private long dispatchNanos;
+    private int cancelledAssetCount;
+    private long cancelledAssetBytes;
+    private int skippedDecodeCount;
+    private boolean loadTracing;
+    private AssetLoadListener loadListener;
+    private final AssetLoadTracer loadTracer = new AssetLoadTracer();
+    /** Whether loaders are wrapped to record traces. Read without synchronization by {@link #getLoader(Class, String)}. */
+    private volatile boolean loadTracerActive;
+
+    public AssignmentAssetManager() {
+        super();
+    }
+
+    public AssignmentAssetManager(FileHandleResolver resolver, boolean defaultLoaders) {
+        super(resolver, defaultLoaders);
+    }
+
+    public AssignmentAssetManager(FileHandleResolver resolver) {
+        super(resolver);
+    }
+
+    /**
+     * Sets the number of worker threads used to decode the images of pending Texture assets in parallel. By default,
+     * this is 0, and textures are decoded one at a time on the AssetManager's loading thread like any other asset.
+     * <p>
+     * When enabled, textures requested by asset containers are decoded on the worker threads ahead of being passed to
+     * the AssetManager, up to twice as many at a time as there are threads. The AssetManager then only uploads the
+     * decoded data, which still happens on the thread that calls {@link #update()}. Only Texture assets that use the
+     * default {@link com.badlogic.gdx.assets.loaders.TextureLoader} or a {@link CachingTextureLoader}, and do not supply
+     * their own {@link com.badlogic.gdx.assets.loaders.TextureLoader.TextureParameter#textureData TextureData}, are
+     * decoded this way. All other assets, including ETC1 and KTX textures, load as usual. Assets loaded directly with
+     * {@link #load(AssetDescriptor)} are not affected.
+     * <p>
+     * A good value is the number of available processors, minus one for the rendering thread. Has no effect on GWT.
+     * Decoded images are held in memory until they are uploaded, so this increases peak memory usage while loading.
+     * Changing the thread count waits for decodes that are already running to finish.
+     *
+     * @param threadCount The number of decoding threads, or 0 to disable parallel decoding.
+     */
+    public synchronized void setTextureDecodeThreads(int threadCount) {
+        if (threadCount < 0)
+            throw new GdxRuntimeException("Thread count cannot be negative: " + threadCount);
+        if (Gdx.app != null && Gdx.app.getType() == Application.ApplicationType.WebGL)
+            return;
+        if (textureDecoder != null) {
+            if (textureDecoder.threadCount == threadCount)
+                return;
+            textureDecoder.dispose();
+            textureDecoder = null;
+        }
+        if (threadCount > 0)
+            textureDecoder = new ParallelTextureDecoder(threadCount);
+    }
+
+    /**
+     * Sets the total capacity of the read buffers kept in a pool for reading container texture files into before
+     * decoding them. By default, this is 0, and every decode reads its file into a new array the size of the file, which
+     * adds up to a lot of garbage when many textures are loaded or restored at once.
+     * <p>
+     * Buffers are sized in powers of two, and each is returned to the pool as soon as its image is decoded, so a pool
+     * about twice the size of the largest texture file, times the number of decoding threads, is usually enough. The
+     * pool applies to container textures loaded afterwards with the default TextureLoader, including restores of
+     * textures whose source was not kept (see {@link #setRestoreSourceBudget(long)}). Only the encoded files are read
+     * into pooled buffers. The native memory of each decoded image is still allocated and freed by the decoder. Reducing
+     * the size frees pooled buffers until it is met. Has no effect on GWT.
+     *
+     * @param bytes The maximum total capacity of pooled buffers, or 0 to disable pooling.
+     */
+    public synchronized void setDecodeBufferPoolSize(long bytes) {
+        if (bytes < 0)
+            throw new GdxRuntimeException("Decode buffer pool size cannot be negative: " + bytes);
+        if (Gdx.app != null && Gdx.app.getType() == Application.ApplicationType.WebGL)
+            return;
+        decodeBuffers.setLimit(bytes);
+    }
+
+    public synchronized long getDecodeBufferPoolSize() {
+        return decodeBuffers.getLimit();
+    }
+
+    /** @return The total capacity of the decode buffers currently waiting in the pool. */
+    public synchronized long getPooledDecodeBufferBytes() {
+        return decodeBuffers.getPooledBytes();
+    }
+
+    /**
+     * Sets the file that records the order in which container assets are first requested, and how long each takes to
+     * load, so the next launch can start decoding the textures that are likely needed first with
+     * {@link #prefetchPredictedAssets(int)}. The record of the previous session is read from the file if it exists,
+     * and recording of this session starts. The file is only written by {@link #savePreloadHistory()}. Has no effect on
+     * GWT.
+     *
+     * @param file A writable file, for example a {@link com.badlogic.gdx.Files.FileType#Local Local} file, or null to
+     *             stop recording.
+     */
+    public synchronized void setPreloadHistoryFile(FileHandle file) {
+        if (Gdx.app != null && Gdx.app.getType() == Application.ApplicationType.WebGL)
+            return;
+        preloadHistory = file == null ? null : new PreloadHistory(file);
+    }
+
+    /**
+     * Writes the assets recorded this session to the preload history file, replacing the previous session's record.
+     * Call this once the assets needed at startup have loaded, so they lead the record.
+     */
+    public synchronized void savePreloadHistory() {
+        if (preloadHistory != null)
+            preloadHistory.save();
+    }
+
+    /**
+     * Starts decoding the textures that the previous session requested first, according to the preload history file,
+     * before any container requests them. Call this as early as possible, before the GL context and the app's own
+     * initialization are done, to hide file reading and decoding behind them. When a container later requests one of
+     * these textures with the same format and mip map setting, its decode is taken over instead of starting another.
+     * <p>
+     * Decoding uses the threads set with {@link #setTextureDecodeThreads(int)}, so nothing is started if there are none
+     * or no preload history file is set. Only textures that could be decoded in parallel are prefetched, and starting
+     * stops early if the {@link #setDecodedBytesLimit(long) decoded bytes limit} is reached. Decoded images wait in
+     * memory until they are requested, or until {@link #cancelPrefetch()} or {@link #clear()} is called.
+     *
+     * @param maxAssets The maximum number of textures to start decoding.
+     * @return The number of textures whose decoding was started.
+     */
+    public synchronized int prefetchPredictedAssets(int maxAssets) {
+        if (preloadHistory == null || textureDecoder == null)
+            return 0;
+        int runningCount = getRunningDecodeCount();
+        int startedCount = 0;
+        for (PreloadHistory.Entry entry : preloadHistory.previousEntries) {
+            if (startedCount == maxAssets)
+                break;
+            if (!entry.isTexture() || prefetches.containsKey(entry.fileName) || isLoaded(entry.fileName)
+                    || pendingAssets.get(entry.fileName) != null)
+                continue;
+            AssetDescriptor<Texture> descriptor = entry.createTextureDescriptor();
+            if (!ParallelTextureDecoder.canDecode(this, descriptor))
+                continue;
+            if (!canStartDecode(runningCount))
+                break;
+            PendingAssetQueue.PendingAsset prefetch = new PendingAssetQueue.PendingAsset(descriptor, 0, -1);
+            prefetch.decodeChecked = true;
+            prefetch.decoding = textureDecoder.submit(this, prefetch, null, restoreSources.getLimit() > 0 ? restoreSources : null,
+                    decodeBuffers.getLimit() > 0 ? decodeBuffers : null, inFlightBytes);
+            prefetches.put(entry.fileName, prefetch);
+            runningCount++;
+            startedCount++;
+        }
+        return startedCount;
+    }
+
+    /** Discards the decodes started by {@link #prefetchPredictedAssets(int)} that have not been requested yet. */
+    public synchronized void cancelPrefetch() {
+        for (PendingAssetQueue.PendingAsset prefetch : prefetches.values())
+            abandonDecode(prefetch);
+        prefetches.clear();
+    }
+
+    /**
+     * @return The number of textures requested by containers whose decoding was already started by
+     * {@link #prefetchPredictedAssets(int)}.
+     */
+    public synchronized int getPrefetchHitCount() {
+        return prefetchHitCount;
+    }
+
+    /**
+     * Hands the prefetched decode of a newly pending asset to it, if there is one and it was decoded with the same
+     * parameters, or otherwise discards it.
+     */
+    private void adoptPrefetch(AssetDescriptor<?> descriptor) {
+        PendingAssetQueue.PendingAsset prefetch = prefetches.remove(descriptor.fileName);
+        if (prefetch == null)
+            return;
+        TextureLoader.TextureParameter prefetchParameter = (TextureLoader.TextureParameter) prefetch.descriptor.params;
+        TextureLoader.TextureParameter parameter = descriptor.params instanceof TextureLoader.TextureParameter ?
+                (TextureLoader.TextureParameter) descriptor.params : null;
+        boolean matches = ParallelTextureDecoder.canDecode(this, descriptor)
+                && prefetchParameter.format == (parameter == null ? null : parameter.format)
+                && prefetchParameter.genMipMaps == (parameter != null && parameter.genMipMaps);
+        if (!matches) {
+            abandonDecode(prefetch);
+            return;
+        }
+        PendingAssetQueue.PendingAsset asset = pendingAssets.get(descriptor.fileName);
+        asset.decodeChecked = true;
+        asset.decoding = prefetch.decoding;
+        prefetchHitCount++;
+    }
+
+    /**
+     * Sets the maximum number of bytes of decoded texture images that may wait in memory to be uploaded. By default,
+     * this is 0, and there is no limit. When many large textures are queued at once, the images decoded ahead by
+     * {@link #setTextureDecodeThreads(int)}, and those still being uploaded in bands by
+     * {@link #setTextureUploadBudget(int)}, can otherwise all be held at the same time.
+     * <p>
+     * While the decoded bytes in flight are at or above the limit, no new decodes are started, and textures waiting to
+     * be uploaded in bands are not loaded, until earlier images have been uploaded and freed. Image sizes are only
+     * known once they are decoded, so running decodes are counted at the average size of the images decoded so far, and
+     * the limit can be exceeded if they turn out bigger. A single image bigger than the limit is still loaded.
+     *
+     * @param bytes The maximum number of decoded bytes in flight, or 0 for no limit.
+     * @see #getPeakDecodedBytes()
+     */
+    public synchronized void setDecodedBytesLimit(long bytes) {
+        if (bytes < 0)
+            throw new GdxRuntimeException("Decoded bytes limit cannot be negative: " + bytes);
+        inFlightLimit = bytes;
+    }
+
+    public synchronized long getDecodedBytesLimit() {
+        return inFlightLimit;
+    }
+
+    /** @return The estimated number of bytes of decoded texture images currently waiting to be uploaded. */
+    public synchronized long getDecodedBytesInFlight() {
+        return inFlightBytes.getBytes();
+    }
+
+    /**
+     * @return The highest number of bytes of decoded texture images that waited to be uploaded at once, since this
+     * AssetManager was created or {@link #resetPeakDecodedBytes()} was last called. Useful for choosing a
+     * {@link #setDecodedBytesLimit(long) limit} for a class of devices.
+     */
+    public synchronized long getPeakDecodedBytes() {
+        return inFlightBytes.getPeakBytes();
+    }
+
+    /** Resets the peak reported by {@link #getPeakDecodedBytes()} to the current bytes in flight. */
+    public synchronized void resetPeakDecodedBytes() {
+        inFlightBytes.resetPeak();
+    }
+
+    /** @return Whether the decoded bytes in flight are at or above the limit. */
+    private boolean isInFlightLimitReached() {
+        return inFlightLimit > 0 && inFlightBytes.getBytes() >= inFlightLimit;
+    }
+
+    /** @return The number of texture decodes that have been started and are not done yet. */
+    private int getRunningDecodeCount() {
+        int count = 0;
+        for (int i = 0; i < pendingAssets.size(); i++) {
+            AsyncResult<TextureData> decoding = pendingAssets.get(i).decoding;
+            if (decoding != null && !decoding.isDone())
+                count++;
+        }
+        for (PendingAssetQueue.PendingAsset asset : abandonedDecodes) {
+            if (!asset.decoding.isDone())
+                count++;
+        }
+        for (PendingAssetQueue.PendingAsset asset : prefetches.values()) {
+            if (!asset.decoding.isDone())
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return Whether another decode can start without exceeding the decoded bytes limit, counting each running decode
+     * as an image of the average size decoded so far. Until a size is known, decodes run one at a time. If nothing is
+     * in flight, a decode can always start.
+     */
+    private boolean canStartDecode(int runningCount) {
+        if (inFlightLimit == 0)
+            return true;
+        long bytes = inFlightBytes.getBytes();
+        if (runningCount == 0 && bytes == 0)
+            return true;
+        long averageBytes = inFlightBytes.getAverageBytes();
+        return averageBytes >= 0 && bytes + runningCount * averageBytes < inFlightLimit;
+    }
+
+    /** Stops counting the decoded image of the last dispatched texture, which has been uploaded by now. */
+    private void releaseDispatchedBytes() {
+        inFlightBytes.remove(dispatchedBytes);
+        dispatchedBytes = 0;
+    }
+
+    /**
+     * @return The number of assets whose loading was cancelled because every container that requested them was
+     * unloaded before they finished loading. Assets that were still waiting in this AssetManager's queue are dropped
+     * without any work being done. An asset that had already started loading stops after its current loading step.
+     */
+    public synchronized int getCancelledAssetCount() {
+        return cancelledAssetCount;
+    }
+
+    /**
+     * @return The total file size of the assets counted by {@link #getCancelledAssetCount()}, as far as it is known
+     * without reading the files. Only sizes recorded in generated binders count, as for {@link #getFileBytesProgress()}.
+     */
+    public synchronized long getCancelledAssetBytes() {
+        return cancelledAssetBytes;
+    }
+
+    /**
+     * @return The number of texture decodes started ahead of loading by {@link #setTextureDecodeThreads(int)} that
+     * were skipped because their asset was cancelled before a decoding thread picked them up.
+     */
+    public synchronized int getSkippedDecodeCount() {
+        return skippedDecodeCount;
+    }
+
+    /** Resets the cancellation counts reported by {@link #getCancelledAssetCount()} and related methods to zero. */
+    public synchronized void resetCancellationCounts() {
+        cancelledAssetCount = 0;
+        cancelledAssetBytes = 0;
+        skippedDecodeCount = 0;
+    }
+
+    /**
+     * Sets the memory budget for keeping assets loaded after the last container referencing them is unloaded. By
+     * default, this is 0, and such assets are unloaded immediately.
+     * <p>
+     * Within the budget, released assets stay loaded, and are assigned immediately without reloading if a container
+     * that needs them is loaded again. When the budget is exceeded, the least recently released assets are unloaded
+     * first. Only assets whose memory use can be estimated are retained: Textures, TextureAtlases, BitmapFonts and
+     * Pixmaps. Sizes are estimated from image dimensions and formats. A retained asset that is bigger than the whole
+     * budget is unloaded immediately. Reducing the budget unloads retained assets until it is met.
+     *
+     * @param bytes The maximum estimated number of bytes of retained assets.
+     */
+    public synchronized void setRetentionBudget(long bytes) {
+        if (bytes < 0)
+            throw new GdxRuntimeException("Retention budget cannot be negative: " + bytes);
+        retentionBudget = bytes;
+        trimRetainedAssets();
+    }
+
+    public synchronized long getRetentionBudget() {
+        return retentionBudget;
+    }
+
+    /** @return The estimated number of bytes of assets kept loaded by the retention budget. */
+    public synchronized long getRetainedBytes() {
+        return retainedAssets.getTotalBytes();
+    }
+
+    /** @return The number of assets kept loaded by the retention budget. */
+    public synchronized int getRetainedAssetCount() {
+        return retainedAssets.size();
+    }
+
+    /** Unloads the least recently released retained assets until they fit the retention budget. */
+    private void trimRetainedAssets() {
+        while (retainedAssets.getTotalBytes() > retentionBudget) {
+            String fileName = retainedAssets.removeOldest();
+            if (isLoaded(fileName)) { // may have been unloaded directly
+                unload(fileName);
+            } else {
+                PendingAssetQueue.PendingAsset restore = pendingAssets.remove(fileName);
+                if (restore != null) {
+                    scheduledAssetCount--;
+                    scheduledFileBytes -= restore.fileBytes;
+                    cancelRestore(restore);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the memory budget for keeping the source data of container textures in memory after they are uploaded, so
+     * they can be restored quickly after the GL context is lost, which happens frequently to Android live wallpapers.
+     * By default, this is 0, and restoring a texture reads and decodes its file again.
+     * <p>
+     * When a texture is first loaded, its decoded pixels are kept if they fit the remaining budget. Otherwise its
+     * compressed file contents are kept if they fit, which skips reading the file but not decoding it. This applies to
+     * container textures loaded afterwards with the default TextureLoader. Textures loaded with a
+     * {@link CachingTextureLoader} are already restored from the cache without decoding. Reducing the budget frees kept
+     * source data until it is met.
+     * <p>
+     * To restore textures through this AssetManager at all, it must be passed to
+     * {@link Texture#setAssetManager(com.badlogic.gdx.assets.AssetManager)}. Container textures are then restored in
+     * order of container priority, one at a time across calls to {@link #update()}, and the progress of the restore is
+     * reported by {@link #getRestoreProgress()}. They keep their fields and Texture objects, and can be drawn as soon
+     * as they are restored. Note that libGDX finishes any loading that is in progress before starting the restore.
+     *
+     * @param bytes The maximum number of bytes of kept source data.
+     */
+    public synchronized void setRestoreSourceBudget(long bytes) {
+        if (bytes < 0)
+            throw new GdxRuntimeException("Restore source budget cannot be negative: " + bytes);
+        restoreSources.setLimit(bytes);
+        if (restoreSources.getUsedBytes() <= bytes)
+            return;
+        for (Texture texture : getAll(Texture.class, new Array<Texture>())) {
+            releaseRestoreSource(texture);
+            if (restoreSources.getUsedBytes() <= bytes)
+                return;
+        }
+    }
+
+    public synchronized long getRestoreSourceBudget() {
+        return restoreSources.getLimit();
+    }
+
+    /** @return The number of bytes of texture source data kept for context restores. */
+    public synchronized long getRestoreSourceBytes() {
+        return restoreSources.getUsedBytes();
+    }
+
+    /** @return Whether container textures are still being restored after a GL context loss. */
+    public synchronized boolean isRestoring() {
+        return restoredCount < restoreCount;
+    }
+
+    /**
+     * @return The fraction of container textures that have been restored since the last GL context loss, or 1 if
+     * none needed restoring.
+     */
+    public synchronized float getRestoreProgress() {
+        return restoreCount == 0 ? 1f : (float) restoredCount / restoreCount;
+    }
+
+    void releaseRestoreSource(Texture texture) {
+        TextureData data = texture.getTextureData();
+        if (data instanceof SlicedTextureData)
+            data = ((SlicedTextureData) data).getSource();
+        if (data instanceof RestorableTextureData)
+            ((RestorableTextureData) data).releaseSource();
+    }
+
+    /**
+     * Sets the maximum number of bytes of texture data uploaded per update when container textures are first loaded.
+     * By default, this is 0, and each texture is uploaded all at once, which for a large texture can take long enough
+     * to cause a visible hitch in a loading animation.
+     * <p>
+     * When enabled, the storage of a texture is allocated when it is loaded, and its image is then uploaded in bands
+     * of rows, up to this many bytes per call to {@link #update()}, or per pass of {@link #update(int)}. At least one
+     * row is uploaded per update. The fields referencing a texture are assigned only after its whole image has been
+     * uploaded. This applies to container textures loaded afterwards with the default TextureLoader that do not use mip
+     * maps and are not KTX or ETC1 files. Has no effect on GWT. Textures restored after a context loss are uploaded all
+     * at once. The decoded image of each texture is held in memory until its upload completes.
+     *
+     * @param bytesPerUpdate The number of bytes to upload per update, or 0 to upload each texture all at once.
+     */
+    public synchronized void setTextureUploadBudget(int bytesPerUpdate) {
+        if (bytesPerUpdate < 0)
+            throw new GdxRuntimeException("Texture upload budget cannot be negative: " + bytesPerUpdate);
+        if (Gdx.app != null && Gdx.app.getType() == Application.ApplicationType.WebGL)
+            return;
+        textureUploadBudget = bytesPerUpdate;
+    }
+
+    public synchronized int getTextureUploadBudget() {
+        return textureUploadBudget;
+    }
+
+    /** @return The number of container textures whose images are still being uploaded in bands. */
+    public synchronized int getTextureUploadsInProgress() {
+        return slicedUploads.size;
+    }
+
+    /** Uploads the next bands of rows of textures being uploaded in bands, up to the upload budget. */
+    private void uploadTextureSlices() {
+        int remainingBytes = textureUploadBudget;
+        ObjectMap.Entries<String, SlicedTextureData> entries = slicedUploads.entries();
+        while (entries.hasNext) {
+            ObjectMap.Entry<String, SlicedTextureData> entry = entries.next();
+            SlicedTextureData data = entry.value;
+            if (remainingBytes > 0 && data.isUploading())
+                remainingBytes -= data.uploadRows(get(entry.key, Texture.class), remainingBytes);
+            if (!data.isUploading()) {
+                entries.remove();
+                inFlightBytes.remove(data.getImageBytes());
+            }
+        }
+    }
+
+    /** Stops uploading a texture in bands, such as when it is unloaded or its data replaced, and frees its image. */
+    synchronized void cancelSlicedUpload(String fileName) {
+        SlicedTextureData data = slicedUploads.remove(fileName);
+        if (data != null) {
+            data.releasePixmap();
+            inFlightBytes.remove(data.getImageBytes());
+        }
+    }
+
+    /**
+     * @return Whether the asset is loaded and, if it is a texture being uploaded in bands, its upload has completed.
+     */
+    synchronized boolean isAssetReady(String fileName, Class<?> type) {
+        return isLoaded(fileName, type) && !slicedUploads.containsKey(fileName);
+    }
+
+    /**
+     * Sets whether to record an {@link AssetLoadTrace} for each asset loaded, with the time it spent waiting in the
+     * queue, loading on the loading thread and loading on the rendering thread, the size of its file, and the container
+     * that requested it. Recorded traces can be retrieved with {@link #getLoadTraces()} and summarized with
+     * {@link #getSlowestLoadsReport(int)}. Tracing is also enabled while a listener is set with
+     * {@link #setLoadListener(AssetLoadListener)}.
+     * <p>
+     * Tracing works by wrapping the loaders returned by {@link #getLoader(Class, String)}, so while it is enabled,
+     * those loaders are not instances of their original classes. It adds a small overhead to each loading step.
+     * Disabling tracing does not discard the traces that were already recorded.
+     */
+    public synchronized void setLoadTracing(boolean enabled) {
+        loadTracing = enabled;
+        updateLoadTracer();
+    }
+
+    public synchronized boolean isLoadTracing() {
+        return loadTracerActive;
+    }
+
+    /**
+     * Sets a listener that is notified with the {@link AssetLoadTrace} of each asset when it finishes loading. Setting
+     * a listener enables load tracing (see {@link #setLoadTracing(boolean)}).
+     *
+     * @param listener The listener, or null to remove it.
+     */
+    public synchronized void setLoadListener(AssetLoadListener listener) {
+        loadListener = listener;
+        updateLoadTracer();
+    }
+
+    private void updateLoadTracer() {
+        loadTracer.listener = loadListener;
+        loadTracerActive = loadTracing || loadListener != null;
+        if (!loadTracerActive)
+            loadTracer.clearActiveTraces();
+    }
+
+    /** @return The traces of all assets that finished loading while tracing was enabled, in the order they finished. */
+    public synchronized Array<AssetLoadTrace> getLoadTraces() {
+        return loadTracer.getFinishedTraces(new Array<AssetLoadTrace>());
+    }
+
+    /** Discards all recorded load traces. */
+    public synchronized void clearLoadTraces() {
+        loadTracer.clearFinishedTraces();
+    }
+
+    /**
+     * Lists the assets that took longest to load for each container, from the recorded load traces. Containers are
+     * listed in order of the total time spent loading their assets, and each container's assets in order of the time
+     * spent loading them, excluding time waiting in the queue. Assets that were not requested by a container are listed
+     * together last.
+     *
+     * @param countPerContainer The maximum number of assets to list for each container.
+     * @return A human readable, multi-line report.
+     */
+    public synchronized String getSlowestLoadsReport(int countPerContainer) {
+        ObjectMap<Object, Array<AssetLoadTrace>> tracesByContainer = new ObjectMap<>();
+        ObjectMap<Object, Long> loadNanosByContainer = new ObjectMap<>();
+        Array<AssetLoadTrace> uncontainedTraces = new Array<>();
+        for (AssetLoadTrace trace : getLoadTraces()) {
+            Object container = trace.getContainer();
+            if (container == null) {
+                uncontainedTraces.add(trace);
+                continue;
+            }
+            Array<AssetLoadTrace> traces = tracesByContainer.get(container);
+            if (traces == null) {
+                traces = new Array<>();
+                tracesByContainer.put(container, traces);
+            }
+            traces.add(trace);
+            loadNanosByContainer.put(container, loadNanosByContainer.get(container, 0L) + trace.getLoadNanos());
+        }
+        Array<Object> containers = tracesByContainer.keys().toArray();
+        containers.sort((a, b) -> Long.compare(loadNanosByContainer.get(b), loadNanosByContainer.get(a)));
+
+        StringBuilder report = new StringBuilder();
+        for (Object container : containers)
+            appendSlowestLoads(report, String.valueOf(container), loadNanosByContainer.get(container), tracesByContainer.get(container), countPerContainer);
+        if (uncontainedTraces.size > 0) {
+            long loadNanos = 0;
+            for (AssetLoadTrace trace : uncontainedTraces)
+                loadNanos += trace.getLoadNanos();
+            appendSlowestLoads(report, "(no container)", loadNanos, uncontainedTraces, countPerContainer);
+        }
+        return report.toString();
+    }
+
+    private static void appendSlowestLoads(StringBuilder report, String title, long loadNanos, Array<AssetLoadTrace> traces, int count) {
+        traces.sort((a, b) -> Long.compare(b.getLoadNanos(), a.getLoadNanos()));
+        report.append(title).append(": ").append(loadNanos / 1000000f).append(" ms in ").append(traces.size).append(" assets\n");
+        for (int i = 0; i < Math.min(count, traces.size); i++)
+            report.append("    ").append(traces.get(i)).append('\n');
+    }
+
+    /**
+     * Returns a handle for fast repeated lookups of a loaded asset. Calling {@link AssetHandle#get()} is a bounds
+     * checked array read instead of a hash lookup. The same handle is returned for an asset until it is unloaded, which
+     * invalidates the handle.
+     *
+     * @throws GdxRuntimeException if the asset is not loaded, or is not of the given type.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> AssetHandle<T> getHandle(String fileName, Class<T> type) {
+        T asset = get(fileName, type);
+        AssetHandle<?> handle = handles.get(fileName);
+        if (handle != null) {
+            if (handle.getType() != type)
+                throw new GdxRuntimeException("Asset with name '" + fileName + "' has a handle of type " + handle.getType().getSimpleName());
+            return (AssetHandle<T>) handle;
+        }
+        int index;
+        if (freeHandleIndices.size > 0) {
+            index = freeHandleIndices.pop();
+        } else {
+            index = handleCount++;
+            if (index == handleAssets.length) {
+                Object[] assets = new Object[index * 2];
+                int[] generations = new int[index * 2];
+                System.arraycopy(handleAssets, 0, assets, 0, index);
+                System.arraycopy(handleGenerations, 0, generations, 0, index);
+                handleAssets = assets;
+                handleGenerations = generations;
+            }
+        }
+        handleAssets[index] = asset;
+        AssetHandle<T> newHandle = new AssetHandle<>(this, fileName, type, index, handleGenerations[index]);
+        handleIndices.put(fileName, index);
+        handles.put(fileName, newHandle);
+        return newHandle;
+    }
+
+    /** @return The asset in a handle slot, or null if the handle of the given generation has been invalidated. */
+    Object getHandleAsset(int index, int generation) {
+        return handleGenerations[index] == generation ? handleAssets[index] : null;
+    }
+
+    /** Invalidates the handle of an asset that has been unloaded, if it has one, and frees its slot. */
+    private void invalidateHandle(String fileName) {
+        int index = handleIndices.remove(fileName, -1);
+        if (index < 0)
+            return;
+        handles.remove(fileName);
+        handleAssets[index] = null;
+        handleGenerations[index]++;
+        freeHandleIndices.add(index);
+    }
+
+    /**
+     * @return The estimated GPU memory held by the loaded assets of the container, from the dimensions, formats and mip
+     * maps of their textures, plus their meshes, frame buffers and shader programs where known. GL objects shared by
+     * several of its assets are counted once, but assets shared with other containers are counted in full for each of
+     * them. Lazy assets count only while they are requested. Returns 0 if the container was not loaded with this
+     * AssetManager.
+     */
+    public synchronized long getContainerGpuBytes(Object assetContainer) {
+        ContainerRecord record = containerRecords.get(assetContainer);
+        if (record == null)
+            return 0;
+        ObjectSet<Object> gpuObjects = new ObjectSet<>();
+        for (int i = 0; i < record.descriptors.length; i++) {
+            if (record.refs[i] == null || record.refs[i].requested)
+                collectGpuObjects(record.descriptors[i].fileName, gpuObjects);
+        }
+        return AssetMemoryEstimator.estimateGpuBytes(gpuObjects);
+    }
+
+    /**
+     * @return The estimated GPU memory held by a loaded asset, as described for {@link #getContainerGpuBytes(Object)},
+     * or 0 if it is not loaded.
+     */
+    public synchronized long getAssetGpuBytes(String fileName) {
+        ObjectSet<Object> gpuObjects = new ObjectSet<>();
+        collectGpuObjects(fileName, gpuObjects);
+        return AssetMemoryEstimator.estimateGpuBytes(gpuObjects);
+    }
+
+    /**
+     * @return The estimated GPU memory held by all loaded assets, as described for
+     * {@link #getContainerGpuBytes(Object)}, counting each GL object once.
+     */
+    public synchronized long getTotalGpuBytes() {
+        ObjectSet<Object> gpuObjects = new ObjectSet<>();
+        for (String fileName : getAssetNames())
+            collectGpuObjects(fileName, gpuObjects);
+        return AssetMemoryEstimator.estimateGpuBytes(gpuObjects);
+    }
+
+    private void collectGpuObjects(String fileName, ObjectSet<Object> gpuObjects) {
+        Object asset = get(fileName, false);
+        if (asset != null)
+            AssetMemoryEstimator.collectGpuObjects(asset, gpuObjects);
+    }
+
+    /**
+     * Lists the estimated GPU memory of each container and of its assets (see {@link #getContainerGpuBytes(Object)}),
+     * to help decide which containers to unload under memory pressure. Containers are listed in order of their total,
+     * and each container's assets in order of their size, noting assets that are shared with other containers. Loaded
+     * assets that no container references, such as retained assets and assets loaded directly, are listed together
+     * last, except for dependencies of other assets.
+     *
+     * @return A human readable, multi-line report.
+     */
+    public synchronized String getGpuMemoryReport() {
+        ObjectLongMap<String> assetBytes = new ObjectLongMap<>();
+        ObjectIntMap<String> containerCounts = new ObjectIntMap<>();
+        ObjectLongMap<Object> containerBytes = new ObjectLongMap<>();
+        ObjectMap<Object, Array<String>> assetsByContainer = new ObjectMap<>();
+        for (ContainerRecord record : containerRecords.values()) {
+            Array<String> fileNames = new Array<>();
+            for (int i = 0; i < record.descriptors.length; i++) {
+                String fileName = record.descriptors[i].fileName;
+                if ((record.refs[i] != null && !record.refs[i].requested) || !isLoaded(fileName) || fileNames.contains(fileName, false))
+                    continue;
+                fileNames.add(fileName);
+                containerCounts.getAndIncrement(fileName, 0, 1);
+                if (!assetBytes.containsKey(fileName))
+                    assetBytes.put(fileName, getAssetGpuBytes(fileName));
+            }
+            assetsByContainer.put(record.container, fileNames);
+            containerBytes.put(record.container, getContainerGpuBytes(record.container));
+        }
+        ObjectSet<String> dependencies = new ObjectSet<>();
+        Array<String> uncontained = new Array<>();
+        for (String fileName : getAssetNames()) {
+            Array<String> assetDependencies = getDependencies(fileName);
+            if (assetDependencies != null)
+                dependencies.addAll(assetDependencies);
+        }
+        long uncontainedBytes = 0;
+        for (String fileName : getAssetNames()) {
+            if (containerCounts.containsKey(fileName) || dependencies.contains(fileName))
+                continue;
+            uncontained.add(fileName);
+            assetBytes.put(fileName, getAssetGpuBytes(fileName));
+            uncontainedBytes += assetBytes.get(fileName, 0);
+        }
+        Array<Object> containers = assetsByContainer.keys().toArray();
+        containers.sort((a, b) -> Long.compare(containerBytes.get(b, 0), containerBytes.get(a, 0)));
+
+        StringBuilder report = new StringBuilder();
+        report.append("Total: ").append(getTotalGpuBytes()).append(" bytes\n");
+        for (Object container : containers) {
+            appendGpuMemory(report, String.valueOf(container), containerBytes.get(container, 0),
+                    assetsByContainer.get(container), assetBytes, containerCounts);
+        }
+        if (uncontained.size > 0)
+            appendGpuMemory(report, "(no container)", uncontainedBytes, uncontained, assetBytes, containerCounts);
+        return report.toString();
+    }
+
+    private void appendGpuMemory(StringBuilder report, String title, long bytes, Array<String> fileNames,
+                                 ObjectLongMap<String> assetBytes, ObjectIntMap<String> containerCounts) {
+        fileNames.sort((a, b) -> Long.compare(assetBytes.get(b, 0), assetBytes.get(a, 0)));
+        report.append(title).append(": ").append(bytes).append(" bytes in ").append(fileNames.size).append(" assets\n");
+        for (String fileName : fileNames) {
+            report.append("    ").append(fileName).append(" (").append(getAssetType(fileName).getSimpleName()).append("): ")
+                    .append(assetBytes.get(fileName, 0)).append(" bytes");
+            int containerCount = containerCounts.get(fileName, 0);
+            if (containerCount > 1)
+                report.append(", shared by ").append(containerCount).append(" containers");
+            else if (retainedAssets.contains(fileName))
+                report.append(", retained");
+            report.append('\n');
+        }
+    }
+
+    /**
+     * @return The loader for the type and file name. While load tracing is enabled, this is a wrapper of the loader
+     * that records load traces.
+     */
+    @Override
+    public <T> AssetLoader<T, ?> getLoader(Class<T> type, String fileName) {
+        AssetLoader<T, ?> loader = getUntracedLoader(type, fileName);
+        if (loader == null || !loadTracerActive)
+            return loader;
+        return loadTracer.wrap(loader, type);
+    }
+
+    /** @return The loader for the type and file name, never wrapped for load tracing. */
+    @SuppressWarnings("unchecked") // loaders are registered by the type they load
+    <T> AssetLoader<T, ?> getUntracedLoader(Class<T> type, String fileName) {
+        return super.getLoader(type, fileName);
+    }
+
+    @Override
+    public synchronized <T> void load(String fileName, Class<T> type, AssetLoaderParameters<T> parameter) {
+        if (isContextRestore(fileName, type, parameter)) {
+            queueRestore(fileName, (TextureLoader.TextureParameter) parameter);
+            return;
+        }
+        if (loadTracerActive && !isLoaded(fileName))
+            loadTracer.request(fileName, type, null);
+        super.load(fileName, type, parameter);
+    }
+
+    /**
+     * @return Whether the load is {@link Texture#invalidateAllTextures(com.badlogic.gdx.Application)} reloading a
+     * container texture into its existing Texture object after a GL context loss.
+     */
+    private boolean isContextRestore(String fileName, Class<?> type, AssetLoaderParameters<?> parameter) {
+        if (type != Texture.class || !(parameter instanceof TextureLoader.TextureParameter))
+            return false;
+        TextureLoader.TextureParameter textureParameter = (TextureLoader.TextureParameter) parameter;
+        return textureParameter.texture != null && !(textureParameter.loadedCallback instanceof RestoreCallback)
+                && (assetReferenceCounts.containsKey(fileName) || retainedAssets.contains(fileName));
+    }
+
+    /** Holds back a texture restore in the pending assets, so it is dispatched in container priority order. */
+    private void queueRestore(String fileName, TextureLoader.TextureParameter parameter) {
+        if (restoredCount == restoreCount)
+            restoreCount = restoredCount = 0;
+        restoreCount++;
+        parameter.loadedCallback = new RestoreCallback(parameter.loadedCallback);
+        pendingAssets.add(new AssetDescriptor<>(fileName, Texture.class, parameter), assetPriorities.get(fileName, Integer.MIN_VALUE));
+        scheduledAssetCount++;
+    }
+
+    /** Disposes the Texture of a restore that was removed before it was dispatched, if the pending asset is one. */
+    private void cancelRestore(PendingAssetQueue.PendingAsset asset) {
+        AssetLoaderParameters<?> parameter = asset.descriptor.params;
+        if (parameter == null || !(parameter.loadedCallback instanceof RestoreCallback))
+            return;
+        restoredCount++;
+        Texture texture = ((TextureLoader.TextureParameter) parameter).texture;
+        releaseRestoreSource(texture);
+        texture.dispose();
+        invalidateHandle(asset.descriptor.fileName);
+    }
+
+    /**
+     * Releases the kept texture source data of an asset that is about to be disposed, and invalidates the
+     * {@link AssetHandle} of an asset once it is unloaded. Textures being restored are unloaded with a reference count
+     * of 0, and keep their source and handle.
+     */
+    @Override
+    public synchronized void unload(String fileName) {
+        Object asset = get(fileName, false);
+        if (asset instanceof Texture && getReferenceCount(fileName) == 1) {
+            releaseRestoreSource((Texture) asset);
+            cancelSlicedUpload(fileName);
+        }
+        boolean restoring = asset instanceof Texture && getReferenceCount(fileName) == 0;
+        super.unload(fileName);
+        if (!restoring && !isLoaded(fileName))
+            invalidateHandle(fileName);
+    }
+
+    /**
+     * Updates the AssetManager for a single task, and then assigns the fields of every queued container whose assets
+     * have all finished loading. Each container's fields are assigned, and its {@link AssetContainer#onAssetsLoaded()}
+     * is called, as soon as its own assets are loaded, even if assets of other containers are still loading.
+     *
+     * @return true if all loading is finished and the fields of all queued containers have been assigned.
+     */
+    @Override
+    public synchronized boolean update() {
+        return update(Long.MAX_VALUE);
+    }
+
+    /**
+     * Updates the AssetManager continuously for the specified number of milliseconds, yielding the CPU to the loading
+     * thread between updates. Unlike {@link AssetManager#update(int)}, the time spent assigning the fields of loaded
+     * containers and calling their {@link AssetContainer#onAssetsLoaded()} is also limited to this budget. If the
+     * budget runs out partway through assigning a container, assignment resumes on the next update. A single loading
+     * step, field assignment, or callback is never interrupted, so this may block for more time if one of those takes
+     * a long time. On GWT, updates for a single task instead (see {@link #update()}).
+     * <p>
+     * The lock on this AssetManager is held for each step and released while yielding between steps, so other threads
+     * calling synchronized methods wait for at most one step. Requests posted with {@link #postLoadAssetFields(Object)}
+     * and {@link #postUnloadAssetFields(Object)} never wait.
+     *
+     * @param millis The time budget for this update.
+     * @return true if all loading is finished and the fields of all queued containers have been assigned.
+     */
+    @Override
+    public boolean update(int millis) {
+        if (Gdx.app != null && Gdx.app.getType() == Application.ApplicationType.WebGL)
+            return update();
+        long deadline = TimeUtils.nanoTime() + millis * 1000000L;
+        while (true) {
+            boolean done;
+            synchronized (this) {
+                done = update(deadline);
+            }
+            if (done || TimeUtils.nanoTime() > deadline)
+                return done;
+            ThreadUtils.yield();
+        }
+    }
+
+    private boolean update(long deadlineNanos) {
+        if (!postedRequests.isEmpty())
+            applyPostedRequests();
+        dispatchPendingAsset();
+        boolean done = super.update() && pendingAssets.size() == 0;
+        if (super.getQueuedAssets() == 0) {
+            if (dispatchedBytes > 0)
+                releaseDispatchedBytes();
+            if (dispatchedFileName != null) {
+                if (preloadHistory != null)
+                    preloadHistory.recordLoadTime(dispatchedFileName, TimeUtils.nanoTime() - dispatchNanos);
+                dispatchedFileName = null;
+            }
+        }
+        if (slicedUploads.size > 0) {
+            uploadTextureSlices();
+            done &= slicedUploads.size == 0;
+        }
+        // If the AssetManager is done, any container that still has missing assets had a loading error. Assigning it
+        // anyway surfaces the error.
+        for (Object assetContainer : queuedContainers) {
+            ContainerRecord record = containerRecords.get(assetContainer);
+            if (!record.ready && (done || isContainerLoaded(record))) {
+                record.ready = true;
+                readyRecords.add(record);
+            }
+        }
+        boolean assigned = assignReadyContainers(deadlineNanos);
+        if (processingRecords.size > 0)
+            assigned &= finishProcessedContainers(deadlineNanos);
+        return done && assigned && queuedContainers.size == 0 && super.isFinished();
+    }
+
+    /**
+     * Hands the next pending asset to the AssetManager's load queue if the AssetManager is not busy. Assets are held
+     * back until then so an asset requested later by a higher priority container can still be loaded first.
+     */
+    private void dispatchPendingAsset() {
+        freeAbandonedDecodes(false);
+        if (pendingAssets.size() == 0) {
+            if (super.isFinished()) { // the last dispatched asset still counts toward progress until it is loaded
+                scheduledAssetCount = 0;
+                scheduledFileBytes = 0;
+            }
+            return;
+        }
+        if (textureDecoder != null)
+            startTextureDecodes();
+        if (super.getQueuedAssets() != 0)
+            return;
+        PendingAssetQueue.PendingAsset next = pendingAssets.get(0);
+        if (next.decoding == null) {
+            // hold back textures that may be uploaded in bands until earlier ones free enough memory
+            if (slicedUploads.size > 0 && next.descriptor.type == Texture.class && isInFlightLimitReached())
+                return;
+            pendingAssets.poll();
+            load(withTextureData(next.descriptor, null));
+        } else if (next.decoding.isDone()) {
+            pendingAssets.poll();
+            TextureData decodedData = getDecodedData(next.decoding);
+            if (decodedData == null) { // decoding failed, so let the loader report the error
+                load(next.descriptor);
+            } else {
+                dispatchedBytes = ParallelTextureDecoder.getImageBytes(decodedData);
+                load(withTextureData(next.descriptor, decodedData));
+            }
+        } else {
+            return;
+        }
+        dispatchedFileBytes = next.fileBytes;
+        dispatchedFileName = next.descriptor.fileName;
+        if (preloadHistory != null)
+            dispatchNanos = TimeUtils.nanoTime();
+    }
+
+    /**
+     * @return A copy of the descriptor of a texture that can be decoded ahead of loading, with the TextureData it is to
+     * be loaded with, or the descriptor itself if it is loaded as usual. The data is the decoded data if any, wrapped in
+     * {@link SlicedTextureData} if it is to be uploaded in bands.
+     */
+    private AssetDescriptor<?> withTextureData(AssetDescriptor<?> descriptor, TextureData decodedData) {
+        if (!ParallelTextureDecoder.canDecode(this, descriptor))
+            return descriptor;
+        TextureData data = decodedData;
+        boolean defaultLoader = getUntracedLoader(Texture.class, descriptor.fileName).getClass() == TextureLoader.class;
+        if (data == null && defaultLoader && (restoreSources.getLimit() > 0 || textureUploadBudget > 0 || decodeBuffers.getLimit() > 0)) {
+            TextureLoader.TextureParameter parameter = (TextureLoader.TextureParameter) descriptor.params;
+            Pixmap.Format format = parameter == null ? null : parameter.format;
+            boolean genMipMaps = parameter != null && parameter.genMipMaps;
+            FileHandle file = getUntracedLoader(Texture.class, descriptor.fileName).resolve(descriptor.fileName);
+            data = new RestorableTextureData(file, format, genMipMaps, restoreSources.getLimit() > 0 ? restoreSources : null,
+                    decodeBuffers.getLimit() > 0 ? decodeBuffers : null);
+        }
+        if (data == null)
+            return descriptor;
+        if (textureUploadBudget == 0 || !defaultLoader || !SlicedTextureData.canSlice(data))
+            return ParallelTextureDecoder.withTextureData(descriptor, data);
+        SlicedTextureData slicedData = new SlicedTextureData(data);
+        AssetDescriptor<Texture> sliced = ParallelTextureDecoder.withTextureData(descriptor, slicedData);
+        sliced.params.loadedCallback = new SlicedUploadCallback(slicedData, sliced.params.loadedCallback);
+        return sliced;
+    }
+
+    /** Starts decoding textures among the next pending assets, looking ahead two per decoding thread. */
+    private void startTextureDecodes() {
+        int lookahead = Math.min(pendingAssets.size(), textureDecoder.threadCount * 2);
+        int runningCount = inFlightLimit == 0 ? 0 : getRunningDecodeCount();
+        for (int i = 0; i < lookahead; i++) {
+            PendingAssetQueue.PendingAsset asset = pendingAssets.get(i);
+            if (asset.decodeChecked)
+                continue;
+            if (!canStartDecode(runningCount))
+                return;
+            asset.decodeChecked = true;
+            if (ParallelTextureDecoder.canDecode(this, asset.descriptor)) {
+                runningCount++;
+                asset.decoding = textureDecoder.submit(this, asset, loadTracerActive ? loadTracer : null,
+                        restoreSources.getLimit() > 0 ? restoreSources : null,
+                        decodeBuffers.getLimit() > 0 ? decodeBuffers : null, inFlightBytes);
+            }
+        }
+    }
+
+    /** @return The result of a finished decode, or null if it failed. */
+    private static TextureData getDecodedData(AsyncResult<TextureData> decoding) {
+        try {
+            return decoding.get();
+        } catch (GdxRuntimeException e) {
+            return null;
+        }
+    }
+
+    private void abandonDecode(PendingAssetQueue.PendingAsset asset) {
+        asset.cancelled = true;
+        if (asset.decoding != null)
+            abandonedDecodes.add(asset);
+    }
+
+    /** Frees the data of abandoned decodes that have finished, or of all of them if waiting is true. */
+    private void freeAbandonedDecodes(boolean wait) {
+        for (int i = abandonedDecodes.size - 1; i >= 0; i--) {
+            PendingAssetQueue.PendingAsset asset = abandonedDecodes.get(i);
+            if (!wait && !asset.decoding.isDone())
+                continue;
+            abandonedDecodes.removeIndex(i);
+            TextureData decodedData = getDecodedData(asset.decoding);
+            if (asset.decodeSkipped)
+                skippedDecodeCount++;
+            if (decodedData != null) {
+                inFlightBytes.remove(ParallelTextureDecoder.getImageBytes(decodedData));
+                ParallelTextureDecoder.discard(decodedData);
+            }
+        }
+    }
+
+    /**
+     * Assigns the fields of containers whose assets are loaded, in the order they became ready, until the deadline
+     * passes. At least one field is assigned or callback made per call, so progress is made even if the deadline has
+     * already passed.
+     *
+     * @return Whether all ready containers were assigned.
+     */
+    private boolean assignReadyContainers(long deadlineNanos) {
+        while (readyRecords.size > 0) {
+            ContainerRecord record = readyRecords.first();
+            Object assetContainer = record.container;
+            if (containerRecords.get(assetContainer) != record) {
+                readyRecords.removeIndex(0); // unloaded before its assignment was finished
+                continue;
+            }
+            // assign references to Asset fields of the container
+            while (record.assignedCount < record.slots.length) {
+                int i = record.assignedCount++;
+                if (record.refs[i] != null)
+                    continue; // assigned when queued
+                record.binder.assign(assetContainer, record.slots[i], get(record.descriptors[i]));
+                if (TimeUtils.nanoTime() > deadlineNanos)
+                    return false;
+            }
+            readyRecords.removeIndex(0);
+            if (assetContainer instanceof ProcessedAssetContainer) {
+                startProcessing(record);
+                continue;
+            }
+            finishContainer(record);
+            if (TimeUtils.nanoTime() > deadlineNanos)
+                return readyRecords.size == 0;
+        }
+        return true;
+    }
+
+    private void finishContainer(ContainerRecord record) {
+        Object assetContainer = record.container;
+        queuedContainers.remove(assetContainer);
+        loadedContainers.add(assetContainer);
+
+        if (assetContainer instanceof AssetContainer)
+            ((AssetContainer) assetContainer).onAssetsLoaded();
+    }
 
-import com.badlogic.gdx.assets.AssetManager;
-import com.badlogic.gdx.assets.AssetDescriptor;
-import com.badlogic.gdx.assets.AssetLoaderParameters;
-import com.badlogic.gdx.assets.loaders.FileHandleResolver;
-import com.badlogic.gdx.assets.loaders.ShaderProgramLoader;
-import com.badlogic.gdx.assets.loaders.TextureLoader;
-import com.badlogic.gdx.graphics.glutils.ShaderProgram;
-import com.badlogic.gdx.utils.GdxRuntimeException;
-import com.badlogic.gdx.utils.ObjectMap;
-import com.badlogic.gdx.utils.ObjectSet;
-import com.badlogic.gdx.utils.reflect.ClassReflection;
-import com.badlogic.gdx.utils.reflect.Field;
-import com.badlogic.gdx.utils.reflect.ReflectionException;
+    private void startProcessing(ContainerRecord record) {
+        if (processingExecutor == null)
+            processingExecutor = new AsyncExecutor(1, "AssignmentAssetManager-Processor");
+        final ProcessedAssetContainer assetContainer = (ProcessedAssetContainer) record.container;
+        record.processing = processingExecutor.submit(new AsyncTask<Void>() {
+            @Override
+            public Void call() {
+                assetContainer.processAssets();
+                return null;
+            }
+        });
+        processingRecords.add(record);
+    }
 
-/**
- * An AssetManager that can load and automatically populate annotated fields for assets in an asset container
- * class. Fields of a class can be annotated with {@link Asset} or {@link Assets} (for arrays of assets) to specify
- * their paths. They can be queued for loading by passing an instance of the containing class using
- * {@link AssignmentAssetManager#loadAssetFields(Object)}. When loading is complete, references to all the loaded
- * assets are automatically populated on the container class.
- * <p>
- * All annotated assets of a container class can be unloaded by calling {@link AssignmentAssetManager#unloadAssetFields(Object)}.
- * This unloads these assets and nulls their fields in the container class. If an asset is still referenced in another loaded
- * container, it will not be unloaded.
- *
- * @author cypherdare
- */
-public class AssignmentAssetManager extends AssetManager {
+    /**
+     * Calls {@link AssetContainer#onAssetsLoaded()} for containers whose background processing has finished, in the
+     * order they were processed, until the deadline passes. Containers that were unloaded while being processed are
+     * discarded instead.
+     *
+     * @return Whether no containers are still being processed or waiting to be notified.
+     */
+    private boolean finishProcessedContainers(long deadlineNanos) {
+        while (processingRecords.size > 0) {
+            ContainerRecord record = processingRecords.first();
+            if (!record.cancelled && containerRecords.get(record.container) != record) {
+                processingRecords.removeIndex(0); // unloaded while processing, so a cancelled record took its place
+                continue;
+            }
+            if (!record.processing.isDone())
+                return false;
+            processingRecords.removeIndex(0);
+            if (record.cancelled) {
+                discardContainer(record);
+                continue;
+            }
+            try {
+                record.processing.get();
+            } catch (GdxRuntimeException e) {
+                // the fields stay assigned, but the container is not notified
+                queuedContainers.remove(record.container);
+                loadedContainers.add(record.container);
+                throw new GdxRuntimeException("Error processing assets of " + record.container, e);
+            }
+            finishContainer(record);
+            if (TimeUtils.nanoTime() > deadlineNanos)
+                return processingRecords.size == 0;
+        }
+        return true;
+    }
 
-    private final ObjectSet<Object> queuedContainers = new ObjectSet<Object>();
-    private final ObjectSet<Object> loadedContainers = new ObjectSet<Object>();
-    private final ObjectMap<Object, ObjectMap<Field, AssetDescriptor<?>>> containersFieldsToAssets = new ObjectMap<>();
-    private final ObjectMap<Object, ObjectMap<Object[], AssetDescriptor<?>[]>> containersFieldsToAssetArrays = new ObjectMap<>();
+    /**
+     * Releases the assets of a container that was unloaded while it was being processed, now that its processing has
+     * finished, and nulls its fields unless the container has been queued again with them since.
+     */
+    private void discardContainer(ContainerRecord record) {
+        try {
+            record.processing.get();
+        } catch (GdxRuntimeException e) {
+            // the container was unloaded, so its error no longer matters
+        }
+        ContainerRecord requeuedRecord = containerRecords.get(record.container);
+        for (int i = 0; i < record.slots.length; i++) {
+            releaseSlot(record, i);
+            if (requeuedRecord == null || !requeuedRecord.hasSlot(record.slots[i]))
+                record.binder.clear(record.container, record.slots[i]);
+        }
+    }
 
-    public AssignmentAssetManager() {
-        super();
+    /** Waits for the background processing of a container to finish, if it is being processed. */
+    private static void waitForProcessing(AsyncResult<Void> processing) {
+        if (processing.isDone())
+            return;
+        try {
+            processing.get();
+        } catch (GdxRuntimeException e) {
+            // the container is being cleared, so its error no longer matters
+        }
     }
 
-    public AssignmentAssetManager(FileHandleResolver resolver, boolean defaultLoaders) {
-        super(resolver, defaultLoaders);
+    /**
+     * @return Whether all assets of the container have been loaded. Assets are checked in order, and the index of the first
+     * one that is not loaded yet is remembered, so each asset is only found to be loaded once.
+     */
+    private boolean isContainerLoaded(ContainerRecord record) {
+        AssetDescriptor<?>[] descriptors = record.descriptors;
+        while (record.loadedCount < descriptors.length) {
+            AssetDescriptor<?> descriptor = descriptors[record.loadedCount];
+            if (record.refs[record.loadedCount] == null && !isAssetReady(descriptor.fileName, descriptor.type))
+                return false;
+            record.loadedCount++;
+        }
+        return true;
     }
 
-    public AssignmentAssetManager(FileHandleResolver resolver) {
-        super(resolver);
+    /**
+     * @return true when all assets are loaded and the fields of all queued containers have been assigned.
+     */
+    @Override
+    public synchronized boolean isFinished() {
+        return postedRequests.isEmpty() && super.isFinished() && pendingAssets.size() == 0 && queuedContainers.size == 0 && slicedUploads.size == 0;
     }
 
+    /**
+     * @return The number of assets queued in the AssetManager plus those requested by containers that have not yet been
+     * passed to the AssetManager.
+     */
     @Override
-    public synchronized boolean update() {
-        boolean done = super.update();
-        if (done) {
-            // assign references to Asset fields of queuedContainers
-            for (Object assetContainer : queuedContainers) {
-                ObjectMap<Field, AssetDescriptor<?>> fieldsToAssets = containersFieldsToAssets.get(assetContainer);
-                for (ObjectMap.Entry<Field, AssetDescriptor<?>> fieldEntry : fieldsToAssets) {
-                    Field field = fieldEntry.key;
-                    makeAccessible(field);
-                    try {
-                        field.set(assetContainer, get(fieldEntry.value));
-                    } catch (ReflectionException e) {
-                        throw new GdxRuntimeException("Failed to assign loaded asset " + field.getName(), e);
-                    }
-                }
-                ObjectMap<Object[], AssetDescriptor<?>[]> fieldsToAssetArrays = containersFieldsToAssetArrays.get(assetContainer);
-                for (ObjectMap.Entry<Object[], AssetDescriptor<?>[]> arrayEntry : fieldsToAssetArrays) {
-                    Object[] destinationArray = arrayEntry.key;
-                    AssetDescriptor<?>[] descriptors = arrayEntry.value;
-                    for (int i = 0; i < descriptors.length; i++) {
-                        destinationArray[i] = get(descriptors[i]);
-                    }
-                }
+    public synchronized int getQueuedAssets() {
+        return super.getQueuedAssets() + pendingAssets.size();
+    }
 
-                if (assetContainer instanceof AssetContainer)
-                    ((AssetContainer) assetContainer).onAssetsLoaded();
-            }
+    /**
+     * @return The progress in percent of completion, including assets requested by containers that have not yet been
+     * passed to the AssetManager.
+     */
+    @Override
+    public synchronized float getProgress() {
+        if (scheduledAssetCount == 0)
+            return super.getProgress();
+        // Container assets are dispatched one at a time, so the AssetManager's own progress covers at most the one in flight.
+        int undispatched = pendingAssets.size();
+        boolean inFlight = !super.isFinished();
+        float completed = scheduledAssetCount - undispatched - (inFlight ? 1 : 0);
+        if (inFlight)
+            completed += super.getProgress();
+        return Math.min(1f, completed / scheduledAssetCount);
+    }
+
+    /**
+     * Like {@link #getProgress()}, but weighs each container asset by the size of its file, which tracks loading time
+     * more closely when file sizes vary widely. File sizes are recorded at build time by the covetools-processor when
+     * its {@code covetools.assetsDir} option is set (see {@link AssetBinder#getFileSize(int)}), so no files are read to
+     * find them. Assets without a recorded size, such as those of containers bound by reflection or with a path prefix,
+     * {@link AssetRef} assets, and dependencies, do not count toward this progress. If no queued asset has a recorded
+     * size, this is the same as {@link #getProgress()}.
+     *
+     * @return The progress in percent of completion, weighted by file size.
+     */
+    public synchronized float getFileBytesProgress() {
+        if (scheduledFileBytes <= 0)
+            return getProgress();
+        boolean inFlight = !super.isFinished();
+        float completed = scheduledFileBytes - pendingAssets.getFileBytes();
+        if (inFlight)
+            completed -= dispatchedFileBytes * (1f - super.getProgress());
+        return Math.min(1f, completed / scheduledFileBytes);
+    }
 
-            loadedContainers.addAll(queuedContainers);
+    /**
+     * Clears and disposes all assets and the preloading queue, and forgets all asset containers. The fields of
+     * containers that were loaded are not nulled. If containers are being processed in the background, the assets are
+     * only disposed once their processing finishes, which is waited for without holding the lock on this AssetManager.
+     */
+    @Override
+    public void clear() {
+        Array<ContainerRecord> processed;
+        synchronized (this) {
+            postedRequests.drain();
+            for (int i = 0; i < pendingAssets.size(); i++) {
+                abandonDecode(pendingAssets.get(i));
+                cancelRestore(pendingAssets.get(i));
+            }
+            pendingAssets.clear();
+            cancelPrefetch();
+            dispatchedFileName = null;
+            restoreCount = restoredCount = 0;
+            for (SlicedTextureData data : slicedUploads.values()) {
+                data.releasePixmap();
+                inFlightBytes.remove(data.getImageBytes());
+            }
+            slicedUploads.clear();
+            releaseDispatchedBytes();
+            assetPriorities.clear();
+            scheduledAssetCount = 0;
+            scheduledFileBytes = 0;
+            readyRecords.clear();
+            processed = new Array<>(processingRecords);
+            for (ContainerRecord record : processed) {
+                if (record.cancelled)
+                    detachRefs(record);
+            }
+            processingRecords.clear();
+            retainedAssets.clear();
+            descriptorCache.clear();
+            loadTracer.clearActiveTraces();
+            for (ContainerRecord record : containerRecords.values())
+                detachRefs(record);
             queuedContainers.clear();
+            loadedContainers.clear();
+            containerRecords.clear();
+            assetReferenceCounts.clear();
+        }
+        for (ContainerRecord record : processed) {
+            waitForProcessing(record.processing);
+            if (record.cancelled) { // unloaded while processing
+                for (int slot : record.slots)
+                    record.binder.clear(record.container, slot);
+            }
+        }
+        super.clear();
+        synchronized (this) {
+            for (String fileName : handles.keys().toArray())
+                invalidateHandle(fileName);
+        }
+    }
+
+    private static void detachRefs(ContainerRecord record) {
+        for (AssetRef<?> ref : record.refs) {
+            if (ref != null) {
+                ref.requested = false;
+                ref.detached = true;
+            }
+        }
+    }
+
+    /**
+     * Disposes all assets and stops the texture decoding and container processing threads, if any. Waits for running
+     * decodes and {@link ProcessedAssetContainer#processAssets()} calls to finish.
+     */
+    @Override
+    public void dispose() {
+        super.dispose();
+        synchronized (this) {
+            if (textureDecoder != null) {
+                textureDecoder.dispose();
+                textureDecoder = null;
+            }
+            if (processingExecutor != null) {
+                processingExecutor.dispose();
+                processingExecutor = null;
+            }
+            freeAbandonedDecodes(true);
         }
-        return done;
     }
 
     /**
@@ -106,17 +1432,48 @@ public class AssignmentAssetManager extends AssetManager {
      * <p>
      * Fields that are not null are skipped to avoid the possibility of loading duplicate assets or
      * failing to dispose of existing assets.
+     * <p>
+     * If a generated {@link AssetBinder} exists for the container class, it is used to access the
+     * fields. Otherwise the annotations of the container class are inspected by reflection the first
+     * time an instance of it is passed to this method, and the results are reused for subsequent
+     * instances.
+     *
+     * <p>
+     * If the container implements {@link AssetContainer}, its assets are loaded with the priority
+     * returned by {@link AssetContainer#getLoadPriority()}. Otherwise they are loaded with priority 0.
      *
      * @param assetContainer An object containing fields annotated with {@link Asset} and
      *                       {@link Assets}. May optionally implement {@link AssetContainer} for
      *                       further customization.
      */
     public synchronized void loadAssetFields(Object assetContainer) {
+        int priority = 0;
+        if (assetContainer instanceof AssetContainer)
+            priority = ((AssetContainer) assetContainer).getLoadPriority();
+        loadAssetFields(assetContainer, priority);
+    }
+
+    /**
+     * Queues the corresponding assets of the {@link Asset} and {@link Assets} annotated fields of
+     * the specified container for loading, like {@link #loadAssetFields(Object)}, but with an
+     * explicit priority.
+     * <p>
+     * Assets of higher priority containers are passed to the loader before those of lower priority
+     * containers, even if the lower priority containers were queued first. Assets of containers
+     * with equal priority are loaded in the order they were queued. An asset that has already
+     * started loading is not interrupted. If an asset is shared with a lower priority container
+     * that is still waiting to load it, the asset is moved up to this container's priority.
+     *
+     * @param assetContainer An object containing fields annotated with {@link Asset} and
+     *                       {@link Assets}. May optionally implement {@link AssetContainer} for
+     *                       further customization.
+     * @param priority       The priority of the container's assets. Higher values load first.
+     */
+    public synchronized void loadAssetFields(Object assetContainer, int priority) {
         if (assetContainer == null)
             throw new GdxRuntimeException("Asset container cannot be null");
         if (queuedContainers.contains(assetContainer) || loadedContainers.contains(assetContainer))
             return;
-        Class<?> containerType = assetContainer.getClass();
         String pathPrepend = "";
         if (assetContainer instanceof AssetContainer) {
             pathPrepend = ((AssetContainer) assetContainer).getAssetPathPrefix();
@@ -124,102 +1481,190 @@ public class AssignmentAssetManager extends AssetManager {
                 pathPrepend = "";
             }
         }
-        Field[] fields = ClassReflection.getDeclaredFields(containerType);
-        ObjectMap<Field, AssetDescriptor<?>> containerAssets = new ObjectMap<Field, AssetDescriptor<?>>();
-        ObjectMap<Object[], AssetDescriptor<?>[]> containerAssetArrays = new ObjectMap<Object[], AssetDescriptor<?>[]>();
-        for (Field field : fields) {
-            com.badlogic.gdx.utils.reflect.Annotation assetAnnotation = field.getDeclaredAnnotation(Asset.class);
-            com.badlogic.gdx.utils.reflect.Annotation shaderProgramAssetAnnotation = field.getDeclaredAnnotation(ShaderProgramAsset.class);
-            com.badlogic.gdx.utils.reflect.Annotation textureAssetAnnotation = field.getDeclaredAnnotation(TextureAsset.class);
-            com.badlogic.gdx.utils.reflect.Annotation assetsAnnotation = field.getDeclaredAnnotation(Assets.class);
-
-            if (assetAnnotation != null ||
-                    shaderProgramAssetAnnotation != null ||
-                    textureAssetAnnotation != null ||
-                    assetsAnnotation != null) {
-                try {
-                    makeAccessible(field);
-                    if (field.get(assetContainer) != null)
-                        continue;
-                } catch (ReflectionException e) {
-                    throw new GdxRuntimeException("Cannot retrieve value of field " + field);
-                }
-            }
-
-            if (assetAnnotation != null ||
-                    shaderProgramAssetAnnotation != null ||
-                    textureAssetAnnotation != null) {
-                Class<?> assetType = field.getType();
-                String fileName;
-                AssetLoaderParameters<?> parameter;
-                if (assetAnnotation != null) {
-                    Asset asset = assetAnnotation.getAnnotation(Asset.class);
-                    fileName = pathPrepend + asset.value();
-                    parameter = findParameter(assetContainer, fields, asset.parameter(), field.getName());
-                } else if (shaderProgramAssetAnnotation != null) {
-                    ShaderProgramAsset asset = shaderProgramAssetAnnotation.getAnnotation(ShaderProgramAsset.class);
-                    fileName = pathPrepend + asset.value();
-                    parameter = generateParameter(pathPrepend, asset);
-                } else {
-                    TextureAsset asset = textureAssetAnnotation.getAnnotation(TextureAsset.class);
-                    fileName = pathPrepend + asset.value();
-                    parameter = generateParameter(asset);
-                }
-                @SuppressWarnings({"rawtypes", "unchecked"})
-                AssetDescriptor<?> assetDescriptor = new AssetDescriptor(fileName, assetType, parameter);
-                load(assetDescriptor);
-                containerAssets.put(field, assetDescriptor);
+        AssetBinder<Object> binder = getBinder(assetContainer.getClass());
+        int slotCount = binder.getSlotCount();
+        int[] slots = new int[slotCount];
+        AssetDescriptor<?>[] descriptors = new AssetDescriptor<?>[slotCount];
+        AssetRef<?>[] refs = new AssetRef<?>[slotCount];
+        int count = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (binder.isAssigned(assetContainer, slot))
                 continue;
+            AssetDescriptor<?> assetDescriptor = descriptorCache.get(binder, assetContainer, pathPrepend, slot);
+            if (binder.isLazy(slot)) {
+                // Assigned right away, but not loaded until requested.
+                refs[count] = createAssetRef(assetDescriptor, assetContainer, priority);
+                binder.assign(assetContainer, slot, refs[count]);
+            } else {
+                retainAsset(assetDescriptor, assetContainer, priority,
+                        pathPrepend.isEmpty() ? Math.max(0, binder.getFileSize(slot)) : 0);
             }
+            slots[count] = slot;
+            descriptors[count] = assetDescriptor;
+            count++;
+        }
+        // Assigning nothing creates the empty arrays of @Assets fields, so they are non-null while their assets load.
+        for (int i = 0; i < count; i++) {
+            if (refs[i] == null)
+                binder.assign(assetContainer, slots[i], null);
+        }
+        ContainerRecord record = new ContainerRecord(assetContainer, binder, pathPrepend, slots, descriptors, refs, count);
+        ContainerRecord retainedRecord = containerRecords.get(assetContainer);
+        if (retainedRecord != null) // Assets left over from unloading only some asset types of this container
+            record = retainedRecord.merge(record);
+        else
+            descriptorCache.retainPrefix(pathPrepend);
+        containerRecords.put(assetContainer, record);
+        queuedContainers.add(assetContainer);
+    }
 
-            if (assetsAnnotation != null) {
-                Class<?> assetType = field.getType().getComponentType();
-                if (assetType == null) {
-                    throw new GdxRuntimeException(String.format("@Assets may only be used with an array, and %s is not an array.", field.getName()));
-                }
-                Assets assets = assetsAnnotation.getAnnotation(Assets.class);
-                String[] fileNames = assets.value();
-                if (pathPrepend != null) {
-                    for (int i = 0; i < fileNames.length; i++)
-                        fileNames[i] = pathPrepend + fileNames[i];
-                }
-                AssetDescriptor<?>[] assetDescriptors = new AssetDescriptor[fileNames.length];
-
-                String[] parameters = assets.parameters();
-                if (parameters.length > 0) {
-                    if (parameters.length != fileNames.length)
-                        throw new GdxRuntimeException(String.format("For asset array %s, number of parameters does not match number of file name values.", field.getName()));
-                    for (int i = 0; i < assetDescriptors.length; i++) {
-                        AssetLoaderParameters<?> parameter = findParameter(assetContainer, fields, parameters[i], field.getName());
-                        @SuppressWarnings({"rawtypes", "unchecked"})
-                        AssetDescriptor<?> assetDescriptor = new AssetDescriptor(fileNames[i], assetType, parameter);
-                        assetDescriptors[i] = assetDescriptor;
-                        load(assetDescriptors[i]);
-                    }
-                } else {
-                    // No parameters array specified, check for single parameter. Use that or null for parameters
-                    AssetLoaderParameters<?> parameter = findParameter(assetContainer, fields, assets.parameter(), field.getName());
-                    for (int i = 0; i < assetDescriptors.length; i++) {
-                        @SuppressWarnings({"rawtypes", "unchecked"})
-                        AssetDescriptor<?> assetDescriptor = new AssetDescriptor(fileNames[i], assetType, parameter);
-                        assetDescriptors[i] = assetDescriptor;
-                        load(assetDescriptors[i]);
-                    }
-                }
+    /**
+     * Queues the assets of each of the specified containers for loading, as if passing each of them to
+     * {@link #loadAssetFields(Object)} in order, while holding the lock on this AssetManager only once. The internal
+     * container and asset maps are grown once for all of the containers' assets.
+     * <p>
+     * Descriptors are shared between containers that request the same asset with the same parameter object. Descriptors
+     * of assets whose parameters come from their annotations rather than from a field are only created once for all
+     * containers of the same class and path prefix.
+     *
+     * @param assetContainers Objects containing fields annotated with {@link Asset} and {@link Assets}.
+     */
+    public synchronized void loadAllAssetFields(Object... assetContainers) {
+        int slotCount = 0;
+        for (Object assetContainer : assetContainers)
+            slotCount += countSlots(assetContainer);
+        ensureCapacity(assetContainers.length, slotCount);
+        for (Object assetContainer : assetContainers)
+            loadAssetFields(assetContainer);
+    }
 
-                Object[] containerArray = (Object[]) Array.newInstance(assetType, fileNames.length);
-                try { // instantiate the empty array for the assets
-                    makeAccessible(field);
-                    field.set(assetContainer, containerArray);
-                } catch (ReflectionException e) {
-                    throw new GdxRuntimeException("Failed to assign generated array for " + field.getName(), e);
-                }
-                containerAssetArrays.put(containerArray, assetDescriptors);
-            }
+    /**
+     * Queues the assets of each of the specified containers for loading, like {@link #loadAllAssetFields(Object...)}.
+     *
+     * @param assetContainers Objects containing fields annotated with {@link Asset} and {@link Assets}.
+     */
+    public synchronized void loadAllAssetFields(Iterable<?> assetContainers) {
+        int containerCount = 0;
+        int slotCount = 0;
+        for (Object assetContainer : assetContainers) {
+            containerCount++;
+            slotCount += countSlots(assetContainer);
+        }
+        ensureCapacity(containerCount, slotCount);
+        for (Object assetContainer : assetContainers)
+            loadAssetFields(assetContainer);
+    }
+
+    /** @return The number of asset slots of the container's class, or 0 if the container is null. */
+    private int countSlots(Object assetContainer) {
+        return assetContainer == null ? 0 : getBinder(assetContainer.getClass()).getSlotCount();
+    }
+
+    /**
+     * Grows the container and asset maps once for a batch of containers, instead of resizing them repeatedly as each
+     * container is queued. The slot count may overestimate the number of distinct assets if they are shared.
+     */
+    private void ensureCapacity(int containerCount, int slotCount) {
+        queuedContainers.ensureCapacity(containerCount);
+        containerRecords.ensureCapacity(containerCount);
+        assetReferenceCounts.ensureCapacity(slotCount);
+        assetPriorities.ensureCapacity(slotCount);
+    }
+
+    /**
+     * Requests that the assets of the specified container be queued for loading, like {@link #loadAssetFields(Object)},
+     * from any thread. The request is applied on the rendering thread at the start of the next {@link #update()}, so
+     * this never waits for an update or a loading step in progress. Requests posted from the same thread are applied in
+     * the order they were posted. Until then, {@link #isFinished()} returns false.
+     * <p>
+     * Only posting is lock-free. Updates hold the lock on this AssetManager while they apply posted requests, run
+     * loaders and assign fields, because {@link AssetManager#update()} is itself synchronized and the container and
+     * reference count maps are modified throughout. The synchronized methods of this AssetManager, including
+     * {@link #isFinished()}, still wait for the current update step when called from another thread.
+     *
+     * @param assetContainer An object containing fields annotated with {@link Asset} and {@link Assets}.
+     */
+    public void postLoadAssetFields(Object assetContainer) {
+        if (assetContainer == null)
+            throw new GdxRuntimeException("Asset container cannot be null");
+        postedRequests.postLoad(assetContainer);
+    }
+
+    /**
+     * Requests that the assets of the specified container be queued for loading with an explicit priority, like
+     * {@link #loadAssetFields(Object, int)}, from any thread. See {@link #postLoadAssetFields(Object)}.
+     *
+     * @param assetContainer An object containing fields annotated with {@link Asset} and {@link Assets}.
+     * @param priority       The priority of the container's assets. Higher values load first.
+     */
+    public void postLoadAssetFields(Object assetContainer, int priority) {
+        if (assetContainer == null)
+            throw new GdxRuntimeException("Asset container cannot be null");
+        postedRequests.postLoad(assetContainer, priority);
+    }
+
+    /**
+     * Requests that the assets of the specified container be unloaded, like {@link #unloadAssetFields(Object)}, from any
+     * thread. The request is applied on the rendering thread at the start of the next {@link #update()}, in order with
+     * load requests posted from the same thread. The container's fields are nulled at that time.
+     *
+     * @param assetContainer An object containing asset references that was previously loaded or posted for loading.
+     */
+    public void postUnloadAssetFields(Object assetContainer) {
+        postUnloadAssetFields(assetContainer, null);
+    }
+
+    /**
+     * Requests that the assets of the specified type of the specified container be unloaded, like
+     * {@link #unloadAssetFields(Object, Class)}, from any thread. See {@link #postUnloadAssetFields(Object)}.
+     *
+     * @param assetContainer An object containing asset references that was previously loaded or posted for loading.
+     * @param assetType      Only assets of the corresponding type will be unloaded.
+     */
+    public void postUnloadAssetFields(Object assetContainer, Class<?> assetType) {
+        if (assetContainer == null)
+            throw new GdxRuntimeException("Asset container cannot be null");
+        postedRequests.postUnload(assetContainer, assetType);
+    }
+
+    /** Applies the load and unload requests posted from other threads since the last update. */
+    private void applyPostedRequests() {
+        for (ContainerRequestQueue.Request request = postedRequests.drain(); request != null; request = request.next) {
+            if (request.unload)
+                unloadAssetFields(request.assetContainer, request.assetType);
+            else if (request.hasPriority)
+                loadAssetFields(request.assetContainer, request.priority);
+            else
+                loadAssetFields(request.assetContainer);
+        }
+    }
+
+    /**
+     * @return The generated {@link AssetBinder} for the container class if there is one, or otherwise a binder that
+     * accesses the annotated fields by reflection.
+     */
+    @SuppressWarnings("unchecked")
+    AssetBinder<Object> getBinder(Class<?> containerType) {
+        AssetBinder<?> binder = binders.get(containerType);
+        if (binder == null) {
+            binder = findGeneratedBinder(containerType);
+            if (binder == null)
+                binder = AssetFieldSchema.create(containerType);
+            binders.put(containerType, binder);
+        }
+        return (AssetBinder<Object>) binder;
+    }
+
+    private static AssetBinder<?> findGeneratedBinder(Class<?> containerType) {
+        String binderName = containerType.getName().replace("$", "$$") + "AssetBinder";
+        try {
+            Class<?> binderType = ClassReflection.forName(binderName);
+            if (!ClassReflection.isAssignableFrom(AssetBinder.class, binderType))
+                return null;
+            return (AssetBinder<?>) ClassReflection.newInstance(binderType);
+        } catch (ReflectionException e) {
+            return null;
         }
-        containersFieldsToAssets.put(assetContainer, containerAssets);
-        containersFieldsToAssetArrays.put(assetContainer, containerAssetArrays);
-        queuedContainers.add(assetContainer);
     }
 
     /**
@@ -239,7 +1684,7 @@ public class AssignmentAssetManager extends AssetManager {
             try {
                 Class<?> parameterContainerClass = ClassReflection.forName(className);
                 parameterField = ClassReflection.getDeclaredField(parameterContainerClass, parameterFieldName);
-                makeAccessible(parameterField);
+                AssetFieldSchema.makeAccessible(parameterField);
                 AssetLoaderParameters<?> parameter = (AssetLoaderParameters<?>) parameterField.get(null);
                 if (parameter == null) {
                     throw new GdxRuntimeException(String.format("The specified parameter %s for asset %s cannot be null.", parameterFieldName, annotatedFieldName));
@@ -252,7 +1697,7 @@ public class AssignmentAssetManager extends AssetManager {
 
         for (Field field : containerFields) {
             if (field.getName().equals(parameterFieldName)) {
-                makeAccessible(field);
+                AssetFieldSchema.makeAccessible(field);
                 try {
                     AssetLoaderParameters<?> parameter = (AssetLoaderParameters<?>) field.get(container);
                     if (parameter == null) {
@@ -267,16 +1712,6 @@ public class AssignmentAssetManager extends AssetManager {
         throw new GdxRuntimeException(String.format("The specified parameter %s for asset %s does not exist.", parameterFieldName, annotatedFieldName));
     }
 
-    private void makeAccessible(Field field) {
-        if (!field.isAccessible()) {
-            try {
-                field.setAccessible(true);
-            } catch (AccessControlException ex) {
-                throw new GdxRuntimeException(String.format("Field %s cannot be made accessible", field.getName()));
-            }
-        }
-    }
-
     /**
      * Unloads the corresponding assets of the {@link Asset} and {@link Assets} annotated fields of the specified container,
      * if they are not referenced by any other containers. Nulls out these fields in the asset container.
@@ -285,7 +1720,7 @@ public class AssignmentAssetManager extends AssetManager {
      *
      * @param assetContainer An object containing asset references that was previously loaded with {@link #loadAssetFields(Object)}.
      */
-    public void unloadAssetFields(Object assetContainer) {
+    public synchronized void unloadAssetFields(Object assetContainer) {
         unloadAssetFields(assetContainer, null);
     }
 
@@ -294,115 +1729,351 @@ public class AssignmentAssetManager extends AssetManager {
      * if they are not referenced by any other containers. Nulls out these fields in the asset container.
      * <p>
      * If this container was not already loaded or queued for loading, nothing will be unloaded.
+     * <p>
+     * If the container is being processed in the background (see {@link ProcessedAssetContainer}), this does not wait
+     * for processing to finish. The container's assets are released and its fields nulled by {@link #update()} once it
+     * finishes, and it is not notified.
      *
      * @param assetContainer An object containing asset references that was previously loaded with {@link #loadAssetFields(Object)}.
      * @param assetType      Only assets of the corresponding type will be unloaded.
      */
-    public void unloadAssetFields(Object assetContainer, Class<?> assetType) {
-        boolean isQueuedOrLoaded = false;
-        if (queuedContainers.contains(assetContainer)) {
-            queuedContainers.remove(assetContainer);
-            isQueuedOrLoaded = true;
-        }
-        if (loadedContainers.contains(assetContainer)) {
-            loadedContainers.remove(assetContainer);
-            isQueuedOrLoaded = true;
-        }
-        if (!isQueuedOrLoaded)
+    public synchronized void unloadAssetFields(Object assetContainer, Class<?> assetType) {
+        ContainerRecord record = containerRecords.remove(assetContainer);
+        if (record == null)
             return;
+        queuedContainers.remove(assetContainer);
+        loadedContainers.remove(assetContainer);
+        boolean processing = record.processing != null && !record.processing.isDone();
 
-        ObjectMap<Field, AssetDescriptor<?>> assets = containersFieldsToAssets.get(assetContainer);
-        ObjectMap<Object[], AssetDescriptor<?>[]> assetArrays = containersFieldsToAssetArrays.get(assetContainer);
-        containersFieldsToAssets.remove(assetContainer);
-        containersFieldsToAssetArrays.remove(assetContainer);
+        int[] retainedSlots = new int[record.slots.length];
+        AssetDescriptor<?>[] retainedDescriptors = new AssetDescriptor<?>[record.slots.length];
+        AssetRef<?>[] retainedRefs = new AssetRef<?>[record.slots.length];
+        int retainedCount = 0;
+        int[] cancelledSlots = processing ? new int[record.slots.length] : null;
+        AssetDescriptor<?>[] cancelledDescriptors = processing ? new AssetDescriptor<?>[record.slots.length] : null;
+        AssetRef<?>[] cancelledRefs = processing ? new AssetRef<?>[record.slots.length] : null;
+        int cancelledCount = 0;
+        for (int i = 0; i < record.slots.length; i++) {
+            int slot = record.slots[i];
+            AssetDescriptor<?> asset = record.descriptors[i];
+            AssetRef<?> ref = record.refs[i];
+            if (assetType != null && assetType != asset.type) {
+                retainedSlots[retainedCount] = slot;
+                retainedDescriptors[retainedCount] = asset;
+                retainedRefs[retainedCount] = ref;
+                retainedCount++;
+                continue;
+            }
+            if (processing) {
+                // processAssets() may still be reading the fields, so they are released once it finishes
+                cancelledSlots[cancelledCount] = slot;
+                cancelledDescriptors[cancelledCount] = asset;
+                cancelledRefs[cancelledCount] = ref;
+                cancelledCount++;
+                continue;
+            }
+            releaseSlot(record, i);
+            // null field references of asset container
+            record.binder.clear(assetContainer, slot);
+        }
+        if (cancelledCount > 0) {
+            ContainerRecord cancelledRecord = new ContainerRecord(assetContainer, record.binder, record.pathPrefix,
+                    cancelledSlots, cancelledDescriptors, cancelledRefs, cancelledCount);
+            cancelledRecord.processing = record.processing;
+            cancelledRecord.cancelled = true;
+            processingRecords.add(cancelledRecord);
+        }
+        if (retainedCount > 0) {
+            // Keep track of the remaining assets so they are released if the rest of the container is unloaded later.
+            ContainerRecord retainedRecord = new ContainerRecord(assetContainer, record.binder, record.pathPrefix,
+                    retainedSlots, retainedDescriptors, retainedRefs, retainedCount);
+            retainedRecord.processing = record.processing;
+            containerRecords.put(assetContainer, retainedRecord);
+        } else {
+            descriptorCache.releasePrefix(record.pathPrefix);
+        }
+    }
 
-        // unload asset fields if not in any other loaded asset containers
-        for (AssetDescriptor<?> asset : assets.values()) {
-            if (!isReferenced(asset) && (assetType == null || assetType == asset.type))
-                unload(asset.fileName);
+    /** Releases the asset or lazy reference of the record's slot at the given index. */
+    private void releaseSlot(ContainerRecord record, int index) {
+        AssetDescriptor<?> asset = record.descriptors[index];
+        AssetRef<?> ref = record.refs[index];
+        if (ref != null) {
+            releaseAssetRef(ref);
+            ref.detached = true;
+            if (!assetReferenceCounts.containsKey(asset.fileName))
+                descriptorCache.release(asset.fileName);
+        } else {
+            // unload asset fields if not in any other loaded asset containers
+            releaseAsset(asset);
         }
-        for (AssetDescriptor<?>[] assetArray : assetArrays.values()) {
-            for (AssetDescriptor<?> asset : assetArray) {
-                if (!isReferenced(asset) && (assetType == null || assetType == asset.type))
-                    unload(asset.fileName);
+    }
+
+    /** @return A lazy reference to the asset of the descriptor, typed by the descriptor's asset type. */
+    private <T> AssetRef<T> createAssetRef(AssetDescriptor<T> descriptor, Object assetContainer, int priority) {
+        return new AssetRef<>(this, descriptor, assetContainer, priority);
+    }
+
+    /**
+     * Adds a container reference to an asset, scheduling it for loading if it was not referenced by any container yet
+     * and is not still loaded from the retention budget.
+     */
+    private void retainAsset(AssetDescriptor<?> asset, Object assetContainer, int priority, long fileBytes) {
+        int referenceCount = assetReferenceCounts.getAndIncrement(asset.fileName, 0, 1);
+        if (referenceCount == 0 || priority > assetPriorities.get(asset.fileName, priority))
+            assetPriorities.put(asset.fileName, priority);
+        if (referenceCount == 0) {
+            if (preloadHistory != null)
+                preloadHistory.recordRequest(asset, assetContainer);
+            if (retainedAssets.remove(asset.fileName)) {
+                if (isLoaded(asset.fileName, asset.type))
+                    return; // the AssetManager reference held for retention now belongs to the container
+                if (isLoaded(asset.fileName))
+                    unload(asset.fileName); // retained with a different type, which load() would reject
             }
+            pendingAssets.add(asset, priority, fileBytes);
+            scheduledAssetCount++;
+            scheduledFileBytes += fileBytes;
+            if (prefetches.size > 0)
+                adoptPrefetch(asset);
+            if (loadTracerActive)
+                loadTracer.request(asset.fileName, asset.type, assetContainer);
+        } else {
+            pendingAssets.raisePriority(asset.fileName, priority);
         }
+    }
 
-        // null field references of asset container
-        for (Field field : assets.keys()) {
-            if (assetType != null && assetType != field.getType())
-                continue;
-            try {
-                field.set(assetContainer, null);
-            } catch (ReflectionException e) {
-                throw new GdxRuntimeException("Failed to clear field " + field.getName(), e);
+    /**
+     * Removes a container reference from an asset, unloading it if no other container references it and it does not fit
+     * the retention budget.
+     */
+    private void releaseAsset(AssetDescriptor<?> asset) {
+        int referenceCount = assetReferenceCounts.getAndIncrement(asset.fileName, 0, -1) - 1;
+        if (referenceCount <= 0) {
+            assetReferenceCounts.remove(asset.fileName, 0);
+            assetPriorities.remove(asset.fileName, 0);
+            descriptorCache.release(asset.fileName);
+            loadTracer.cancel(asset.fileName);
+            PendingAssetQueue.PendingAsset pendingAsset = pendingAssets.remove(asset.fileName);
+            if (pendingAsset != null) {
+                scheduledAssetCount--; // never passed to the AssetManager
+                scheduledFileBytes -= pendingAsset.fileBytes;
+                abandonDecode(pendingAsset);
+                cancelRestore(pendingAsset);
+                recordCancelledAsset(pendingAsset.fileBytes);
+            } else if (!retainLoadedAsset(asset.fileName)) {
+                // The AssetManager drops an asset still in its queue, and stops one in progress after its current step.
+                if (!isLoaded(asset.fileName))
+                    recordCancelledAsset(asset.fileName.equals(dispatchedFileName) ? dispatchedFileBytes : 0);
+                unload(asset.fileName);
             }
         }
-        for (Object[] array : assetArrays.keys()) {
-            Field[] fields = ClassReflection.getDeclaredFields(assetContainer.getClass());
-            for (Field field : fields) {
-                if (assetType != null && assetType != field.getType().getComponentType())
-                    continue;
-                makeAccessible(field);
-                try {
-                    if (field.get(assetContainer) == array) {
-                        field.set(assetContainer, null);
-                    }
-                } catch (ReflectionException e) {
-                    throw new GdxRuntimeException("Failed to clear field " + field.getName(), e);
-                }
+    }
+
+    /** @param fileBytes The size of the asset's file recorded when it was queued, or 0 if it is not known. */
+    private void recordCancelledAsset(long fileBytes) {
+        cancelledAssetCount++;
+        cancelledAssetBytes += fileBytes;
+    }
+
+    /** @return Whether the unreferenced asset was kept loaded within the retention budget. */
+    private boolean retainLoadedAsset(String fileName) {
+        if (retentionBudget == 0 || !isLoaded(fileName))
+            return false; // still loading
+        Object asset = get(fileName, false);
+        long bytes = AssetMemoryEstimator.estimateBytes(asset);
+        if (bytes == 0 || bytes > retentionBudget)
+            return false;
+        retainedAssets.add(fileName, bytes);
+        trimRetainedAssets();
+        return true;
+    }
+
+    /** Queues the asset of a lazy reference for loading if it has not been requested yet. */
+    synchronized void requestAssetRef(AssetRef<?> ref) {
+        if (ref.requested)
+            return;
+        if (ref.detached)
+            throw new GdxRuntimeException("The container of " + ref + " has been unloaded.");
+        ref.requested = true;
+        retainAsset(ref.getDescriptor(), ref.container, ref.priority, 0);
+    }
+
+    /** @return The asset of a lazy reference if it is loaded, after requesting it if it has not been requested yet. */
+    synchronized <T> T getAssetRef(AssetRef<T> ref) {
+        requestAssetRef(ref);
+        return isAssetReady(ref.getFileName(), ref.getType()) ? get(ref.getFileName(), ref.getType()) : null;
+    }
+
+    synchronized void releaseAssetRef(AssetRef<?> ref) {
+        if (!ref.requested)
+            return;
+        ref.requested = false;
+        releaseAsset(ref.getDescriptor());
+    }
+
+    /**
+     * @return The descriptor a container requested the asset with, or null if no container references it.
+     */
+    synchronized AssetDescriptor<?> findContainerDescriptor(String fileName) {
+        for (ContainerRecord record : containerRecords.values()) {
+            for (AssetDescriptor<?> descriptor : record.descriptors) {
+                if (descriptor.fileName.equals(fileName))
+                    return descriptor;
             }
         }
+        return null;
     }
 
-    private boolean isReferenced(AssetDescriptor<?> asset) {
-        // Checks equality of file names of the AssetDescriptor (same behavior as AssetManager)
-        for (ObjectMap<Field, AssetDescriptor<?>> assets : containersFieldsToAssets.values()) {
-            for (AssetDescriptor<?> assetDescriptor : assets.values())
-                if (assetDescriptor.fileName.equals(asset.fileName))
-                    return true;
+    /**
+     * Replaces a loaded asset that has no dependencies with a freshly loaded instance of it, disposing the old one. The
+     * fields that referenced the old instance are reassigned, and {@link AssetContainer#onAssetsLoaded()} is called again
+     * for each affected container that had finished loading.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized void replaceAsset(String fileName, Object asset) {
+        Class<Object> type = getAssetType(fileName);
+        int referenceCount = getReferenceCount(fileName);
+        int handleIndex = handleIndices.remove(fileName, -1);
+        AssetHandle<?> handle = handles.remove(fileName);
+        setReferenceCount(fileName, 1);
+        unload(fileName);
+        addAsset(fileName, type, asset);
+        setReferenceCount(fileName, referenceCount);
+        if (handle != null) {
+            handleIndices.put(fileName, handleIndex);
+            handles.put(fileName, handle);
+            handleAssets[handleIndex] = asset;
         }
 
-        for (ObjectMap<Object[], AssetDescriptor<?>[]> assetArrays : containersFieldsToAssetArrays.values()) {
-            for (AssetDescriptor<?>[] assetArray : assetArrays.values()) {
-                for (AssetDescriptor<?> assetDescriptor : assetArray)
-                    if (assetDescriptor.fileName.equals(asset.fileName))
-                        return true;
+        Array<AssetContainer> reloadedContainers = new Array<>();
+        for (ContainerRecord record : containerRecords.values()) {
+            // Containers still queued have only assigned their leading slots; all others have every slot assigned.
+            int assignedCount = queuedContainers.contains(record.container) ? record.assignedCount : record.slots.length;
+            boolean reassigned = false;
+            for (int i = 0; i < assignedCount; i++) {
+                if (record.refs[i] == null && record.descriptors[i].fileName.equals(fileName)) {
+                    record.binder.assign(record.container, record.slots[i], asset);
+                    reassigned = true;
+                }
             }
+            if (reassigned && record.container instanceof AssetContainer && loadedContainers.contains(record.container))
+                reloadedContainers.add((AssetContainer) record.container);
         }
-
-        return false;
+        for (AssetContainer assetContainer : reloadedContainers)
+            assetContainer.onAssetsLoaded();
     }
 
-    private static ShaderProgramLoader.ShaderProgramParameter generateParameter(String pathPrepend, ShaderProgramAsset asset) {
-        ShaderProgramLoader.ShaderProgramParameter parameter =
-                new ShaderProgramLoader.ShaderProgramParameter();
-        if (!asset.vertexFile().equals("")) {
-            parameter.vertexFile = pathPrepend + asset.vertexFile();
+    /** Counts a finished texture restore, and passes the notification on to the callback set by libGDX. */
+    private final class RestoreCallback implements AssetLoaderParameters.LoadedCallback {
+        private final AssetLoaderParameters.LoadedCallback callback;
+
+        RestoreCallback(AssetLoaderParameters.LoadedCallback callback) {
+            this.callback = callback;
         }
-        if (!asset.fragmentFile().equals("")) {
-            parameter.fragmentFile = pathPrepend + asset.fragmentFile();
+
+        @Override
+        @SuppressWarnings("rawtypes") // as declared by LoadedCallback
+        public void finishedLoading(AssetManager assetManager, String fileName, Class type) {
+            restoredCount++;
+            if (callback != null)
+                callback.finishedLoading(assetManager, fileName, type);
         }
-        parameter.logOnCompileFailure = asset.logOnCompileFailure;
-        String prependVertexCode = asset.prependAllCode() + asset.prependVertexCode();
-        if (!prependVertexCode.equals("")) {
-            parameter.prependVertexCode = prependVertexCode;
+    }
+
+    /** Starts tracking a texture for uploading in bands once it is loaded with its {@link SlicedTextureData}. */
+    private final class SlicedUploadCallback implements AssetLoaderParameters.LoadedCallback {
+        private final SlicedTextureData data;
+        private final AssetLoaderParameters.LoadedCallback callback;
+
+        SlicedUploadCallback(SlicedTextureData data, AssetLoaderParameters.LoadedCallback callback) {
+            this.data = data;
+            this.callback = callback;
         }
-        String prependFragmentCode = asset.prependAllCode() + asset.prependFragmentCode();
-        if (!prependFragmentCode.equals("")) {
-            parameter.prependFragmentCode = prependFragmentCode;
+
+        @Override
+        @SuppressWarnings("rawtypes") // as declared by LoadedCallback
+        public void finishedLoading(AssetManager assetManager, String fileName, Class type) {
+            releaseDispatchedBytes();
+            if (data.isUploading() && get(fileName, Texture.class).getTextureData() == data) {
+                slicedUploads.put(fileName, data);
+                inFlightBytes.add(data.getImageBytes());
+            } else
+                data.releasePixmap(); // was already loaded with other data
+            if (callback != null)
+                callback.finishedLoading(assetManager, fileName, type);
         }
-        return parameter;
     }
 
-    private static TextureLoader.TextureParameter generateParameter(TextureAsset asset) {
-        TextureLoader.TextureParameter parameter = new TextureLoader.TextureParameter();
-        parameter.format = asset.format();
-        parameter.minFilter = asset.filter().minFilter;
-        parameter.magFilter = asset.filter().magFilter;
-        parameter.genMipMaps = asset.filter().usesMipMaps;
-        parameter.wrapU = parameter.wrapV = asset.wrap();
-        return parameter;
+    /**
+     * The assets that were queued for a single container, listed by the slot of the container's {@link AssetBinder}
+     * they will be assigned to.
+     */
+    private static final class ContainerRecord {
+        final Object container;
+        final AssetBinder<Object> binder;
+        /** The path prefix the container's descriptors were created with. */
+        final String pathPrefix;
+        final int[] slots;
+        final AssetDescriptor<?>[] descriptors;
+        /** The lazy references assigned to each slot, or null for slots that are loaded with the container. */
+        final AssetRef<?>[] refs;
+        /** The number of leading descriptors that are known to be loaded. */
+        int loadedCount;
+        /** Whether all assets are loaded and the container is waiting for or undergoing assignment. */
+        boolean ready;
+        /** The number of leading slots that have been assigned. */
+        int assignedCount;
+        /** The background processing of a {@link ProcessedAssetContainer}, or null if it has not started. */
+        AsyncResult<Void> processing;
+        /** Whether the container was unloaded during processing, so this record's slots are released once it finishes. */
+        boolean cancelled;
+
+        ContainerRecord(Object container, AssetBinder<Object> binder, String pathPrefix, int[] slots,
+                        AssetDescriptor<?>[] descriptors, AssetRef<?>[] refs, int count) {
+            this.container = container;
+            this.binder = binder;
+            this.pathPrefix = pathPrefix;
+            if (count < slots.length) {
+                int[] trimmedSlots = new int[count];
+                AssetDescriptor<?>[] trimmedDescriptors = new AssetDescriptor<?>[count];
+                AssetRef<?>[] trimmedRefs = new AssetRef<?>[count];
+                System.arraycopy(slots, 0, trimmedSlots, 0, count);
+                System.arraycopy(descriptors, 0, trimmedDescriptors, 0, count);
+                System.arraycopy(refs, 0, trimmedRefs, 0, count);
+                slots = trimmedSlots;
+                descriptors = trimmedDescriptors;
+                refs = trimmedRefs;
+            }
+            this.slots = slots;
+            this.descriptors = descriptors;
+            this.refs = refs;
+        }
+
+        ContainerRecord merge(ContainerRecord other) {
+            int count = slots.length + other.slots.length;
+            int[] mergedSlots = new int[count];
+            AssetDescriptor<?>[] mergedDescriptors = new AssetDescriptor<?>[count];
+            AssetRef<?>[] mergedRefs = new AssetRef<?>[count];
+            System.arraycopy(slots, 0, mergedSlots, 0, slots.length);
+            System.arraycopy(other.slots, 0, mergedSlots, slots.length, other.slots.length);
+            System.arraycopy(descriptors, 0, mergedDescriptors, 0, descriptors.length);
+            System.arraycopy(other.descriptors, 0, mergedDescriptors, descriptors.length, other.descriptors.length);
+            System.arraycopy(refs, 0, mergedRefs, 0, refs.length);
+            System.arraycopy(other.refs, 0, mergedRefs, refs.length, other.refs.length);
+            ContainerRecord merged = new ContainerRecord(container, binder, pathPrefix, mergedSlots, mergedDescriptors,
+                    mergedRefs, count);
+            merged.processing = processing; // until the merged container is processed again
+            return merged;
+        }
+
+        boolean hasSlot(int slot) {
+            for (int s : slots) {
+                if (s == slot)
+                    return true;
+            }
+            return false;
+        }
     }
 
 }
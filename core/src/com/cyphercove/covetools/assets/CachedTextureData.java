@@ -0,0 +1,135 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * TextureData whose image is read from a {@link DecodedTextureCache}, and uploaded with all of its cached mip map
+ * levels. It is managed, so the cached image is read again if the texture is reloaded after the GL context is lost.
+ *
+ * @author cypherdare
+ */
+final class CachedTextureData implements TextureData {
+
+    private final DecodedTextureCache cache;
+    private final FileHandle file;
+    private final Pixmap.Format requestedFormat;
+    private final boolean useMipMaps;
+    private ByteBuffer blob;
+    private int width;
+    private int height;
+    private Pixmap.Format format;
+    private int levelCount;
+
+    CachedTextureData(DecodedTextureCache cache, FileHandle file, Pixmap.Format format, boolean useMipMaps) {
+        this.cache = cache;
+        this.file = file;
+        this.requestedFormat = format;
+        this.format = format;
+        this.useMipMaps = useMipMaps;
+    }
+
+    @Override
+    public TextureDataType getType() {
+        return TextureDataType.Custom;
+    }
+
+    @Override
+    public boolean isPrepared() {
+        return blob != null;
+    }
+
+    @Override
+    public void prepare() {
+        if (blob != null)
+            throw new GdxRuntimeException("Already prepared");
+        ByteBuffer blob = cache.load(file, requestedFormat, useMipMaps);
+        width = blob.getInt(8);
+        height = blob.getInt(12);
+        format = Pixmap.Format.fromGdx2DPixmapFormat(blob.getInt(16));
+        levelCount = blob.getInt(20);
+        this.blob = blob;
+    }
+
+    @Override
+    public Pixmap consumePixmap() {
+        throw new GdxRuntimeException("This TextureData implementation does not return a Pixmap");
+    }
+
+    @Override
+    public boolean disposePixmap() {
+        throw new GdxRuntimeException("This TextureData implementation does not return a Pixmap");
+    }
+
+    @Override
+    public void consumeCustomData(int target) {
+        if (blob == null)
+            throw new GdxRuntimeException("Call prepare() before calling consumeCustomData()");
+        int glFormat = Pixmap.Format.toGlFormat(format);
+        int glType = Pixmap.Format.toGlType(format);
+        int bytesPerPixel = AssetMemoryEstimator.getBytesPerPixel(format);
+        Gdx.gl.glPixelStorei(GL20.GL_UNPACK_ALIGNMENT, 1);
+        int offset = DecodedTextureCache.HEADER_SIZE;
+        for (int level = 0; level < levelCount; level++) {
+            int levelWidth = Math.max(1, width >> level);
+            int levelHeight = Math.max(1, height >> level);
+            ByteBuffer pixels = blob.duplicate();
+            pixels.limit(offset + levelWidth * levelHeight * bytesPerPixel);
+            pixels.position(offset);
+            Gdx.gl.glTexImage2D(target, level, glFormat, levelWidth, levelHeight, 0, glFormat, glType, pixels.slice());
+            offset = pixels.limit();
+        }
+        blob = null;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public Pixmap.Format getFormat() {
+        return format;
+    }
+
+    @Override
+    public boolean useMipMaps() {
+        return useMipMaps;
+    }
+
+    @Override
+    public boolean isManaged() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+}
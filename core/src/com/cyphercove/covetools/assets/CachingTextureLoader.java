@@ -0,0 +1,72 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.TextureLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.TextureData;
+
+/**
+ * A TextureLoader that reads decoded images from a {@link DecodedTextureCache} instead of decoding image files, adding
+ * them to the cache the first time they are loaded. Textures whose parameters provide their own TextureData, and ETC1
+ * and KTX textures, are loaded as usual. Set it as the Texture loader of an AssetManager:
+ * <pre>
+ * assetManager.setLoader(Texture.class, new CachingTextureLoader(new InternalFileHandleResolver(),
+ *         new DecodedTextureCache(Gdx.files.local("texture-cache/"))));
+ * </pre>
+ * Not available on GWT.
+ *
+ * @author cypherdare
+ */
+public class CachingTextureLoader extends TextureLoader implements TextureDataFactory {
+
+    private final DecodedTextureCache cache;
+
+    public CachingTextureLoader(FileHandleResolver resolver, DecodedTextureCache cache) {
+        super(resolver);
+        this.cache = cache;
+    }
+
+    public DecodedTextureCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public TextureData createTextureData(FileHandle file, Pixmap.Format format, boolean genMipMaps) {
+        String extension = file.extension();
+        if (extension.equals("etc1") || extension.equals("ktx") || extension.equals("zktx"))
+            return TextureData.Factory.loadFromFile(file, format, genMipMaps);
+        return cache.createTextureData(file, format, genMipMaps);
+    }
+
+    @Override
+    public void loadAsync(AssetManager manager, String fileName, FileHandle file, TextureParameter parameter) {
+        if (parameter == null || parameter.textureData == null) {
+            TextureParameter cachedParameter = new TextureParameter();
+            if (parameter != null) {
+                cachedParameter.format = parameter.format;
+                cachedParameter.genMipMaps = parameter.genMipMaps;
+                cachedParameter.texture = parameter.texture;
+            }
+            cachedParameter.textureData = createTextureData(file, cachedParameter.format, cachedParameter.genMipMaps);
+            parameter = cachedParameter;
+        }
+        super.loadAsync(manager, fileName, file, parameter);
+    }
+}
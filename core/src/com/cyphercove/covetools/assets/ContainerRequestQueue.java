@@ -0,0 +1,86 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Load and unload requests for asset containers posted from any thread, applied in the order they were posted when the
+ * rendering thread drains them. Posting never blocks: requests are pushed onto a linked stack with a compare-and-set,
+ * and draining takes the whole stack at once and reverses it.
+ *
+ * @author cypherdare
+ */
+final class ContainerRequestQueue {
+
+    private final AtomicReference<Request> head = new AtomicReference<>();
+
+    /** Posts a load request that uses the container's own {@link AssetContainer#getLoadPriority()}. */
+    void postLoad(Object assetContainer) {
+        push(new Request(assetContainer, false, false, 0, null));
+    }
+
+    void postLoad(Object assetContainer, int priority) {
+        push(new Request(assetContainer, false, true, priority, null));
+    }
+
+    void postUnload(Object assetContainer, Class<?> assetType) {
+        push(new Request(assetContainer, true, false, 0, assetType));
+    }
+
+    private void push(Request request) {
+        Request current;
+        do {
+            current = head.get();
+            request.next = current;
+        } while (!head.compareAndSet(current, request));
+    }
+
+    boolean isEmpty() {
+        return head.get() == null;
+    }
+
+    /** @return The requests posted so far as a list in the order they were posted, or null if there are none. */
+    Request drain() {
+        Request request = head.getAndSet(null);
+        Request first = null;
+        while (request != null) {
+            Request next = request.next;
+            request.next = first;
+            first = request;
+            request = next;
+        }
+        return first;
+    }
+
+    static final class Request {
+        final Object assetContainer;
+        final boolean unload;
+        /** Whether {@link #priority} was given explicitly, rather than taken from the container. */
+        final boolean hasPriority;
+        final int priority;
+        final Class<?> assetType;
+        Request next;
+
+        Request(Object assetContainer, boolean unload, boolean hasPriority, int priority, Class<?> assetType) {
+            this.assetContainer = assetContainer;
+            this.unload = unload;
+            this.hasPriority = hasPriority;
+            this.priority = priority;
+            this.assetType = assetType;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.util.zip.CRC32;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.StreamUtils;
+
+/**
+ * A cache of decoded texture images on the local file system, so images only have to be decoded the first time they
+ * are loaded. Each image is stored as uncompressed pixel data in the format of the texture, including all of its mip
+ * map levels if the texture uses mip maps, so it can be uploaded without any processing. Cached images are stored per
+ * image file path, format and mip mapping, along with the length, modification time and checksum of the image file's
+ * contents. A cached image is used without reading the image file while its length and modification time are
+ * unchanged. Otherwise, or where modification times are not available, the image file is read and its checksum
+ * compared, so a cached image is no longer used once its source file changes.
+ * <p>
+ * Textures are loaded through the cache by setting a {@link CachingTextureLoader} as the Texture loader of an
+ * AssetManager. Cached images are much larger than compressed image files, so the cache trades disk space and reading
+ * time for decoding time. ETC1 and KTX textures are not cached. Not available on GWT.
+ *
+ * @author cypherdare
+ */
+public class DecodedTextureCache {
+
+    static final int MAGIC = 0x43544458; // "CTDX"
+    static final int VERSION = 2;
+    /**
+     * Size of the header: magic number, version, width, height, gdx2d format and mip map level count, followed by the
+     * length, modification time and checksum of the source file.
+     */
+    static final int HEADER_SIZE = 48;
+    private static final int SOURCE_LENGTH_OFFSET = 24;
+    private static final int SOURCE_MODIFIED_OFFSET = 32;
+    private static final int SOURCE_CHECKSUM_OFFSET = 40;
+
+    private final FileHandle directory;
+
+    /**
+     * @param directory The directory to store cached images in. Must be writable, for example a
+     *                  {@link com.badlogic.gdx.Files.FileType#Local Local} directory.
+     */
+    public DecodedTextureCache(FileHandle directory) {
+        this.directory = directory;
+    }
+
+    public FileHandle getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return TextureData that reads the image from the cache when it is prepared, or decodes it and adds it to the
+     * cache if it is not cached yet.
+     */
+    public TextureData createTextureData(FileHandle file, Pixmap.Format format, boolean genMipMaps) {
+        return new CachedTextureData(this, file, format, genMipMaps);
+    }
+
+    /** Deletes all cached images. */
+    public void clear() {
+        directory.deleteDirectory();
+    }
+
+    /**
+     * @return A direct buffer with the cached image data of the file, starting with a header of {@link #HEADER_SIZE}
+     * bytes, followed by the pixels of each mip map level.
+     */
+    ByteBuffer load(FileHandle file, Pixmap.Format format, boolean genMipMaps) {
+        FileHandle cachedFile = directory.child(file.path().replace('/', '_').replace('\\', '_').replace(':', '_')
+                + "_" + (format == null ? "Source" : format.name()) + (genMipMaps ? "_mip" : "") + ".tex");
+        long length = file.length();
+        long lastModified = file.lastModified(); // 0 where it is not available, such as Android internal files
+        ByteBuffer cachedBlob = null;
+        if (cachedFile.exists()) {
+            try {
+                cachedBlob = cachedFile.map();
+                cachedBlob.order(ByteOrder.BIG_ENDIAN);
+                if (!isValid(cachedBlob))
+                    cachedBlob = null;
+            } catch (GdxRuntimeException e) {
+                cachedBlob = null; // Rebuild it.
+            }
+        }
+        if (cachedBlob != null && lastModified != 0 && cachedBlob.getLong(SOURCE_LENGTH_OFFSET) == length
+                && cachedBlob.getLong(SOURCE_MODIFIED_OFFSET) == lastModified)
+            return cachedBlob;
+
+        byte[] bytes = file.readBytes();
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, bytes.length);
+        if (cachedBlob != null && cachedBlob.getLong(SOURCE_LENGTH_OFFSET) == bytes.length
+                && cachedBlob.getLong(SOURCE_CHECKSUM_OFFSET) == checksum.getValue()) {
+            if (lastModified != 0)
+                updateModified(cachedFile, lastModified);
+            return cachedBlob;
+        }
+        ByteBuffer blob = decode(bytes, format, genMipMaps);
+        blob.putLong(SOURCE_LENGTH_OFFSET, bytes.length).putLong(SOURCE_MODIFIED_OFFSET, lastModified)
+                .putLong(SOURCE_CHECKSUM_OFFSET, checksum.getValue());
+        write(cachedFile, blob);
+        return blob;
+    }
+
+    /** Records the new modification time of an unchanged source file, so the next load can skip reading it. */
+    private static void updateModified(FileHandle cachedFile, long lastModified) {
+        try (RandomAccessFile output = new RandomAccessFile(cachedFile.file(), "rw")) {
+            output.seek(SOURCE_MODIFIED_OFFSET);
+            output.writeLong(lastModified);
+        } catch (IOException e) {
+            // The checksum is compared again on the next load.
+        }
+    }
+
+    private static boolean isValid(ByteBuffer blob) {
+        if (blob.capacity() < HEADER_SIZE || blob.getInt(0) != MAGIC || blob.getInt(4) != VERSION)
+            return false;
+        int width = blob.getInt(8);
+        int height = blob.getInt(12);
+        int bytesPerPixel = AssetMemoryEstimator.getBytesPerPixel(Pixmap.Format.fromGdx2DPixmapFormat(blob.getInt(16)));
+        return blob.capacity() == HEADER_SIZE + getDataSize(width, height, bytesPerPixel, blob.getInt(20));
+    }
+
+    static long getDataSize(int width, int height, int bytesPerPixel, int levelCount) {
+        long size = 0;
+        for (int level = 0; level < levelCount; level++)
+            size += (long) Math.max(1, width >> level) * Math.max(1, height >> level) * bytesPerPixel;
+        return size;
+    }
+
+    private static ByteBuffer decode(byte[] bytes, Pixmap.Format format, boolean genMipMaps) {
+        Pixmap pixmap = new Pixmap(bytes, 0, bytes.length);
+        if (format != null && pixmap.getFormat() != format)
+            pixmap = convert(pixmap, format, pixmap.getWidth(), pixmap.getHeight());
+        int width = pixmap.getWidth();
+        int height = pixmap.getHeight();
+        int levelCount = 1;
+        if (genMipMaps) {
+            while (Math.max(width, height) >> levelCount > 0)
+                levelCount++;
+        }
+        int bytesPerPixel = AssetMemoryEstimator.getBytesPerPixel(pixmap.getFormat());
+        ByteBuffer blob = BufferUtils.newByteBuffer((int) (HEADER_SIZE + getDataSize(width, height, bytesPerPixel, levelCount)));
+        blob.order(ByteOrder.BIG_ENDIAN);
+        blob.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height)
+                .putInt(Pixmap.Format.toGdx2DPixmapFormat(pixmap.getFormat())).putInt(levelCount);
+        blob.position(HEADER_SIZE); // the source file fields are filled in by the caller
+        for (int level = 0; level < levelCount; level++) {
+            if (level > 0)
+                pixmap = convert(pixmap, pixmap.getFormat(), Math.max(1, width >> level), Math.max(1, height >> level));
+            blob.put(pixmap.getPixels().duplicate());
+        }
+        pixmap.dispose();
+        blob.flip();
+        return blob;
+    }
+
+    /** @return A copy of the pixmap with the format and size. The original is disposed. */
+    private static Pixmap convert(Pixmap pixmap, Pixmap.Format format, int width, int height) {
+        Pixmap converted = new Pixmap(width, height, format);
+        converted.setBlending(Pixmap.Blending.None);
+        converted.setFilter(Pixmap.Filter.BiLinear);
+        converted.drawPixmap(pixmap, 0, 0, pixmap.getWidth(), pixmap.getHeight(), 0, 0, width, height);
+        pixmap.dispose();
+        return converted;
+    }
+
+    private void write(FileHandle cachedFile, ByteBuffer blob) {
+        FileHandle tempFile = directory.child(cachedFile.name() + "." + Thread.currentThread().getId() + ".tmp");
+        OutputStream output = null;
+        try {
+            output = tempFile.write(false);
+            Channels.newChannel(output).write(blob.duplicate());
+            output.close();
+            output = null;
+            if (!tempFile.file().renameTo(cachedFile.file()))
+                tempFile.moveTo(cachedFile);
+        } catch (IOException | GdxRuntimeException e) {
+            Gdx.app.error("DecodedTextureCache", "Could not cache decoded image " + cachedFile, e);
+        } finally {
+            StreamUtils.closeQuietly(output);
+            if (tempFile.exists())
+                tempFile.delete();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.glutils.FileTextureData;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A pool of the read buffers that image files are read into for decoding: direct ByteBuffers in buckets of power of
+ * two capacities, and the small array each file is streamed through, shared between loading threads. Without the
+ * pool, a Pixmap reads each file into a new array the size of the file. Buffers are returned to the pool as soon as
+ * the image is decoded, and the pool keeps them up to a limit on their total capacity.
+ * <p>
+ * Only the encoded file contents are pooled. The decoder allocates the native memory of each decoded image itself,
+ * and it cannot decode into a given buffer.
+ *
+ * @author cypherdare
+ */
+final class DirectBufferPool {
+
+    /** The capacity of the smallest bucket, as a power of two. */
+    private static final int MIN_BUCKET = 16;
+    private static final int BUCKET_COUNT = 31 - MIN_BUCKET;
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final Array<Array<ByteBuffer>> buckets = new Array<>(true, BUCKET_COUNT);
+    /** Arrays of {@link #CHUNK_SIZE} for streaming files into buffers, one for each thread that has read at once. */
+    private final Array<byte[]> chunks = new Array<>(false, 2);
+    private long limit;
+    private long pooledBytes;
+
+    DirectBufferPool() {
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            buckets.add(new Array<>(false, 4));
+    }
+
+    /** Sets the maximum total capacity of pooled buffers, freeing pooled buffers until it is met. */
+    synchronized void setLimit(long limit) {
+        this.limit = limit;
+        for (int i = BUCKET_COUNT - 1; i >= 0 && pooledBytes > limit; i--) {
+            Array<ByteBuffer> bucket = buckets.get(i);
+            while (bucket.size > 0 && pooledBytes > limit)
+                pooledBytes -= bucket.pop().capacity();
+        }
+        if (limit == 0)
+            chunks.clear();
+    }
+
+    synchronized long getLimit() {
+        return limit;
+    }
+
+    /** @return The total capacity of the buffers currently waiting in the pool. */
+    synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    /** @return A cleared buffer with a capacity of at least the given size, taken from the pool if one is available. */
+    synchronized ByteBuffer obtain(int size) {
+        int bucket = getBucket(size);
+        Array<ByteBuffer> pooled = buckets.get(bucket);
+        if (pooled.size > 0) {
+            ByteBuffer buffer = pooled.pop();
+            pooledBytes -= buffer.capacity();
+            buffer.clear();
+            return buffer;
+        }
+        return BufferUtils.newByteBuffer(1 << (bucket + MIN_BUCKET));
+    }
+
+    /** Returns a buffer obtained from this pool, or drops it if keeping it would exceed the limit. */
+    synchronized void free(ByteBuffer buffer) {
+        if (pooledBytes + buffer.capacity() > limit)
+            return;
+        buckets.get(getBucket(buffer.capacity())).add(buffer);
+        pooledBytes += buffer.capacity();
+    }
+
+    private synchronized byte[] obtainChunk() {
+        return chunks.size > 0 ? chunks.pop() : new byte[CHUNK_SIZE];
+    }
+
+    private synchronized void freeChunk(byte[] chunk) {
+        chunks.add(chunk);
+    }
+
+    private static int getBucket(int size) {
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1 << MIN_BUCKET) - 1);
+        return bits - MIN_BUCKET;
+    }
+
+    /**
+     * Creates the TextureData of an image file with its image already decoded from a pooled buffer. Files that a
+     * Pixmap cannot decode from their contents, or whose length is unknown, are loaded by
+     * {@link TextureData.Factory#loadFromFile(FileHandle, Pixmap.Format, boolean)} as usual.
+     */
+    TextureData loadFromFile(FileHandle file, Pixmap.Format format, boolean useMipMaps) {
+        String name = file.name();
+        long length = file.length();
+        if (name.endsWith(".cim") || name.endsWith(".etc1") || name.endsWith(".ktx") || name.endsWith(".zktx")
+                || length <= 0 || length >= 1 << (BUCKET_COUNT + MIN_BUCKET - 1))
+            return TextureData.Factory.loadFromFile(file, format, useMipMaps);
+        ByteBuffer buffer = obtain((int) length);
+        try {
+            if (!read(file, buffer))
+                return TextureData.Factory.loadFromFile(file, format, useMipMaps); // file changed since its length was read
+            return new FileTextureData(file, new Pixmap(buffer, 0, buffer.limit()), format, useMipMaps);
+        } finally {
+            free(buffer);
+        }
+    }
+
+    /** @return Whether the whole file fit in the buffer, which is flipped for reading. */
+    private boolean read(FileHandle file, ByteBuffer buffer) {
+        InputStream input = file.read();
+        byte[] chunk = obtainChunk();
+        try {
+            int count;
+            while ((count = input.read(chunk)) != -1) {
+                if (count > buffer.remaining())
+                    return false;
+                buffer.put(chunk, 0, count);
+            }
+            buffer.flip();
+            return true;
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Error reading file: " + file, e);
+        } finally {
+            freeChunk(chunk);
+            StreamUtils.closeQuietly(input);
+        }
+    }
+}
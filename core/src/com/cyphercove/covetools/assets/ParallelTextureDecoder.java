@@ -0,0 +1,196 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.loaders.AssetLoader;
+import com.badlogic.gdx.assets.loaders.TextureLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+import com.badlogic.gdx.utils.async.AsyncTask;
+
+/**
+ * Decodes the image data of pending Texture assets on a pool of worker threads, ahead of the AssetManager's single
+ * loading thread. The decoded data is handed to the default {@link TextureLoader} through
+ * {@link TextureLoader.TextureParameter#textureData}, so the loader only has to upload it on the GL thread.
+ *
+ * @author cypherdare
+ */
+final class ParallelTextureDecoder implements Disposable {
+
+    private final AsyncExecutor executor;
+    final int threadCount;
+
+    ParallelTextureDecoder(int threadCount) {
+        this.threadCount = threadCount;
+        executor = new AsyncExecutor(threadCount, "AssignmentAssetManager-Decoder");
+    }
+
+    /**
+     * @return Whether the asset is a Texture that is loaded from a file, without pre-supplied TextureData, by the
+     * default TextureLoader or by a loader that is a {@link TextureDataFactory}.
+     */
+    static boolean canDecode(AssignmentAssetManager assetManager, AssetDescriptor<?> descriptor) {
+        if (descriptor.type != Texture.class)
+            return false;
+        // ETC1 and KTX data hold native buffers that are only freed by uploading them, so they are left to the loader.
+        String fileName = descriptor.fileName;
+        if (fileName.endsWith(".etc1") || fileName.endsWith(".ktx") || fileName.endsWith(".zktx"))
+            return false;
+        AssetLoader<?, ?> loader = assetManager.getUntracedLoader(Texture.class, descriptor.fileName);
+        if (loader == null || (loader.getClass() != TextureLoader.class && !(loader instanceof TextureDataFactory)))
+            return false;
+        if (descriptor.params == null)
+            return true;
+        TextureLoader.TextureParameter parameter = (TextureLoader.TextureParameter) descriptor.params;
+        return parameter.textureData == null && parameter.texture == null;
+    }
+
+    /**
+     * Starts decoding the image of a pending asset for which
+     * {@link #canDecode(AssignmentAssetManager, AssetDescriptor)} is true. If the asset is cancelled before a thread
+     * picks up the decode, it is skipped and the result is null.
+     *
+     * @param tracer        The tracer to record the decoding time with, or null.
+     * @param restoreBudget The budget for keeping the source of the decoded data for context restores, or null.
+     * @param decodeBuffers The pool of buffers to read files into for decoding, or null.
+     * @param inFlight      The count of decoded bytes that are not uploaded yet, which the decoded image is added to.
+     */
+    AsyncResult<TextureData> submit(AssignmentAssetManager assetManager, final PendingAssetQueue.PendingAsset asset,
+                                    final AssetLoadTracer tracer, final RestorableTextureData.SourceBudget restoreBudget,
+                                    final DirectBufferPool decodeBuffers, final InFlightBytes inFlight) {
+        final AssetDescriptor<?> descriptor = asset.descriptor;
+        AssetLoader<?, ?> loader = assetManager.getUntracedLoader(Texture.class, descriptor.fileName);
+        final FileHandle file = loader.resolve(descriptor.fileName);
+        final TextureDataFactory factory = loader instanceof TextureDataFactory ? (TextureDataFactory) loader : null;
+        TextureLoader.TextureParameter parameter = (TextureLoader.TextureParameter) descriptor.params;
+        final Pixmap.Format format = parameter == null ? null : parameter.format;
+        final boolean genMipMaps = parameter != null && parameter.genMipMaps;
+        return executor.submit(new AsyncTask<TextureData>() {
+            @Override
+            public TextureData call() {
+                if (asset.cancelled) {
+                    asset.decodeSkipped = true;
+                    return null;
+                }
+                AssetLoadTrace trace = tracer == null ? null : tracer.start(descriptor.fileName, Texture.class, file);
+                long startTime = TimeUtils.nanoTime();
+                TextureData data;
+                if (factory != null)
+                    data = factory.createTextureData(file, format, genMipMaps);
+                else if (restoreBudget != null)
+                    data = new RestorableTextureData(file, format, genMipMaps, restoreBudget, decodeBuffers);
+                else if (decodeBuffers != null)
+                    data = decodeBuffers.loadFromFile(file, format, genMipMaps);
+                else
+                    data = TextureData.Factory.loadFromFile(file, format, genMipMaps);
+                if (!data.isPrepared())
+                    data.prepare();
+                inFlight.add(getImageBytes(data));
+                if (trace != null)
+                    tracer.addAsyncTime(trace, startTime);
+                return data;
+            }
+        });
+    }
+
+    /**
+     * @return A copy of the descriptor whose parameter carries the given data, so the TextureLoader uses it instead of
+     * creating its own. If the data is already prepared, the TextureLoader skips decoding.
+     */
+    static AssetDescriptor<Texture> withTextureData(AssetDescriptor<?> descriptor, TextureData textureData) {
+        TextureLoader.TextureParameter original = (TextureLoader.TextureParameter) descriptor.params;
+        TextureLoader.TextureParameter parameter = new TextureLoader.TextureParameter();
+        if (original != null) {
+            parameter.format = original.format;
+            parameter.genMipMaps = original.genMipMaps;
+            parameter.minFilter = original.minFilter;
+            parameter.magFilter = original.magFilter;
+            parameter.wrapU = original.wrapU;
+            parameter.wrapV = original.wrapV;
+            parameter.loadedCallback = original.loadedCallback;
+        }
+        parameter.textureData = textureData;
+        return new AssetDescriptor<>(descriptor.fileName, Texture.class, parameter);
+    }
+
+    /** @return The estimated size of the base level of prepared texture data. */
+    static long getImageBytes(TextureData data) {
+        return (long) data.getWidth() * data.getHeight() * AssetMemoryEstimator.getBytesPerPixel(data.getFormat());
+    }
+
+    /** Frees the decoded data of a decode that was abandoned before it could be loaded. */
+    static void discard(TextureData decodedData) {
+        if (decodedData.isPrepared() && decodedData.getType() == TextureData.TextureDataType.Pixmap) {
+            Pixmap pixmap = decodedData.consumePixmap();
+            if (pixmap != null && decodedData.disposePixmap())
+                pixmap.dispose();
+        }
+        if (decodedData instanceof RestorableTextureData)
+            ((RestorableTextureData) decodedData).releaseSource();
+    }
+
+    /** Waits for running decodes to finish and stops the worker threads. */
+    @Override
+    public void dispose() {
+        executor.dispose();
+    }
+
+    /**
+     * The number of bytes of decoded images that have not been uploaded yet, and the highest number observed, shared
+     * between the decoding threads and the AssetManager.
+     */
+    static final class InFlightBytes {
+        private long bytes;
+        private long peakBytes;
+        private long addedBytes;
+        private int addedCount;
+
+        synchronized void add(long bytes) {
+            this.bytes += bytes;
+            peakBytes = Math.max(peakBytes, this.bytes);
+            addedBytes += bytes;
+            addedCount++;
+        }
+
+        /** @return The average size of the images added so far, or -1 if none have been added. */
+        synchronized long getAverageBytes() {
+            return addedCount == 0 ? -1 : addedBytes / addedCount;
+        }
+
+        synchronized void remove(long bytes) {
+            this.bytes -= bytes;
+        }
+
+        synchronized long getBytes() {
+            return bytes;
+        }
+
+        synchronized long getPeakBytes() {
+            return peakBytes;
+        }
+
+        synchronized void resetPeak() {
+            peakBytes = bytes;
+        }
+    }
+}
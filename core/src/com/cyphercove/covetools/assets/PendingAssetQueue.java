@@ -0,0 +1,140 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.async.AsyncResult;
+
+/**
+ * Assets that have been requested by containers but not yet handed to the AssetManager's own load queue, ordered by
+ * priority and then by the order they were requested.
+ *
+ * @author cypherdare
+ */
+final class PendingAssetQueue {
+
+    private final Array<PendingAsset> assets = new Array<>();
+    private final ObjectMap<String, PendingAsset> assetsByName = new ObjectMap<>();
+    private long nextSequence;
+    private long fileBytes;
+
+    int size() {
+        return assets.size;
+    }
+
+    /** @return The pending asset at the given position, where 0 is the next to be dispatched. */
+    PendingAsset get(int index) {
+        return assets.get(index);
+    }
+
+    PendingAsset get(String fileName) {
+        return assetsByName.get(fileName);
+    }
+
+    /** @return The total known file size of the pending assets. */
+    long getFileBytes() {
+        return fileBytes;
+    }
+
+    void add(AssetDescriptor<?> descriptor, int priority) {
+        add(descriptor, priority, 0);
+    }
+
+    /** @param fileBytes The size of the asset's file if it is known ahead of time, or 0. */
+    void add(AssetDescriptor<?> descriptor, int priority, long fileBytes) {
+        PendingAsset asset = new PendingAsset(descriptor, priority, nextSequence++);
+        asset.fileBytes = fileBytes;
+        this.fileBytes += fileBytes;
+        assetsByName.put(descriptor.fileName, asset);
+        insert(asset);
+    }
+
+    /**
+     * Moves a pending asset ahead of lower priority assets if the given priority is higher than its current one.
+     */
+    void raisePriority(String fileName, int priority) {
+        PendingAsset asset = assetsByName.get(fileName);
+        if (asset == null || asset.priority >= priority)
+            return;
+        assets.removeValue(asset, true);
+        asset.priority = priority;
+        insert(asset);
+    }
+
+    /** @return The removed asset, or null if it was not pending. */
+    PendingAsset remove(String fileName) {
+        PendingAsset asset = assetsByName.remove(fileName);
+        if (asset != null) {
+            assets.removeValue(asset, true);
+            fileBytes -= asset.fileBytes;
+        }
+        return asset;
+    }
+
+    /** @return The removed next asset to be dispatched. */
+    PendingAsset poll() {
+        PendingAsset asset = assets.removeIndex(0);
+        assetsByName.remove(asset.descriptor.fileName);
+        fileBytes -= asset.fileBytes;
+        return asset;
+    }
+
+    void clear() {
+        assets.clear();
+        assetsByName.clear();
+        fileBytes = 0;
+    }
+
+    private void insert(PendingAsset asset) {
+        // Binary search for the first asset that should be dispatched after this one.
+        int low = 0;
+        int high = assets.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            PendingAsset other = assets.get(mid);
+            if (other.priority > asset.priority || (other.priority == asset.priority && other.sequence < asset.sequence))
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        assets.insert(low, asset);
+    }
+
+    static final class PendingAsset {
+        final AssetDescriptor<?> descriptor;
+        final long sequence;
+        int priority;
+        /** The size of the asset's file if it was known when it was requested, or 0. */
+        long fileBytes;
+        /** Whether the asset has been checked for decoding by the {@link ParallelTextureDecoder}. */
+        boolean decodeChecked;
+        /** The decode started ahead of dispatch, or null if none was started. */
+        AsyncResult<TextureData> decoding;
+        /** Set when the asset is removed before dispatch, so a decode that has not started yet is skipped. */
+        volatile boolean cancelled;
+        /** Set by the decoding thread if the decode was skipped because the asset was cancelled. */
+        volatile boolean decodeSkipped;
+
+        PendingAsset(AssetDescriptor<?> descriptor, int priority, long sequence) {
+            this.descriptor = descriptor;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.loaders.TextureLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * The order in which assets were first requested by containers, and how long each took to load, as recorded in the
+ * previous session and in the current one. Stored as a small text file with one asset per line.
+ *
+ * @author cypherdare
+ */
+final class PreloadHistory {
+
+    private static final String HEADER = "covetools-preload 1";
+
+    private final FileHandle file;
+    /** The assets recorded in the previous session, in the order they were first requested. */
+    final Array<Entry> previousEntries = new Array<>();
+    private final Array<Entry> entries = new Array<>();
+    private final ObjectMap<String, Entry> entriesByName = new ObjectMap<>();
+
+    /** Reads the previous session's record from the file, if it exists and is valid. */
+    PreloadHistory(FileHandle file) {
+        this.file = file;
+        if (!file.exists())
+            return;
+        try {
+            String[] lines = file.readString("UTF-8").split("\n");
+            if (lines.length == 0 || !lines[0].equals(HEADER))
+                return;
+            for (int i = 1; i < lines.length; i++) {
+                String[] fields = lines[i].split("\t");
+                if (fields.length != 6)
+                    continue;
+                Entry entry = new Entry(fields[0], fields[1], fields[2].isEmpty() ? null : Pixmap.Format.valueOf(fields[2]),
+                        Boolean.parseBoolean(fields[3]), fields[4]);
+                entry.loadMillis = Float.parseFloat(fields[5]);
+                previousEntries.add(entry);
+            }
+        } catch (GdxRuntimeException | IllegalArgumentException e) {
+            previousEntries.clear(); // start over with a fresh record
+        }
+    }
+
+    /** Adds an asset to the current session's record the first time it is requested. */
+    void recordRequest(AssetDescriptor<?> descriptor, Object assetContainer) {
+        if (entriesByName.containsKey(descriptor.fileName))
+            return;
+        Pixmap.Format format = null;
+        boolean genMipMaps = false;
+        if (descriptor.params instanceof TextureLoader.TextureParameter) {
+            TextureLoader.TextureParameter parameter = (TextureLoader.TextureParameter) descriptor.params;
+            format = parameter.format;
+            genMipMaps = parameter.genMipMaps;
+        }
+        String containerName = assetContainer == null ? "" : assetContainer.getClass().getName();
+        Entry entry = new Entry(descriptor.fileName, descriptor.type.getName(), format, genMipMaps, containerName);
+        entries.add(entry);
+        entriesByName.put(descriptor.fileName, entry);
+    }
+
+    /** Records the time an asset took to load, from being passed to the AssetManager until it was loaded. */
+    void recordLoadTime(String fileName, long loadNanos) {
+        Entry entry = entriesByName.get(fileName);
+        if (entry != null && entry.loadMillis < 0)
+            entry.loadMillis = loadNanos / 1000000f;
+    }
+
+    /** Writes the current session's record to the file, replacing the previous one. */
+    void save() {
+        StringBuilder builder = new StringBuilder(HEADER).append('\n');
+        for (Entry entry : entries) {
+            builder.append(entry.fileName).append('\t').append(entry.typeName).append('\t')
+                    .append(entry.format == null ? "" : entry.format.name()).append('\t').append(entry.genMipMaps)
+                    .append('\t').append(entry.containerName).append('\t').append(entry.loadMillis).append('\n');
+        }
+        file.writeString(builder.toString(), false, "UTF-8");
+    }
+
+    static final class Entry {
+        final String fileName;
+        final String typeName;
+        final Pixmap.Format format;
+        final boolean genMipMaps;
+        final String containerName;
+        /** The load time in milliseconds, or -1 if it was not measured. */
+        float loadMillis = -1;
+
+        Entry(String fileName, String typeName, Pixmap.Format format, boolean genMipMaps, String containerName) {
+            this.fileName = fileName;
+            this.typeName = typeName;
+            this.format = format;
+            this.genMipMaps = genMipMaps;
+            this.containerName = containerName;
+        }
+
+        boolean isTexture() {
+            return typeName.equals(Texture.class.getName());
+        }
+
+        /** @return A descriptor for decoding the texture ahead of time with the same parameters it was loaded with. */
+        AssetDescriptor<Texture> createTextureDescriptor() {
+            TextureLoader.TextureParameter parameter = new TextureLoader.TextureParameter();
+            parameter.format = format;
+            parameter.genMipMaps = genMipMaps;
+            return new AssetDescriptor<>(fileName, Texture.class, parameter);
+        }
+    }
+}
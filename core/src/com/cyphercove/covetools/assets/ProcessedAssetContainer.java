@@ -0,0 +1,38 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+/**
+ * An {@link AssetContainer} that processes its loaded assets on a background thread before it is notified that they
+ * are loaded, for building derived data such as lookup tables, collision masks or color palettes without stalling the
+ * rendering thread.
+ *
+ * @author cypherdare
+ */
+public interface ProcessedAssetContainer extends AssetContainer {
+    /**
+     * Called on a background thread of the {@link AssignmentAssetManager} once all assets of this container are loaded
+     * and its asset fields are assigned. {@link #onAssetsLoaded()} is called on the thread that updates the
+     * AssetManager after this returns. Containers are processed one at a time, in the order their assets finished
+     * loading. Must not make GL calls or modify the assets, which may be shared with other containers. An exception
+     * thrown here is rethrown by {@link AssignmentAssetManager#update()}, and {@link #onAssetsLoaded()} is then not
+     * called.
+     * <p>
+     * If the container is unloaded while it is being processed, unloading does not wait. Its assets are released and its
+     * fields nulled once processing finishes, and {@link #onAssetsLoaded()} is not called.
+     */
+    void processAssets ();
+}
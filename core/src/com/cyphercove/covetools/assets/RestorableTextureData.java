@@ -0,0 +1,198 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.glutils.FileTextureData;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Managed TextureData of a texture file that keeps its source in memory after the texture is uploaded, so the texture
+ * can be restored after a GL context loss without reading or decoding the file again. The first time the data is
+ * prepared, it reserves space in a {@link SourceBudget} for the decoded pixels, or if those do not fit, for the
+ * compressed file contents, or otherwise keeps nothing and behaves like a {@link FileTextureData}. Without a budget, it
+ * keeps nothing. If a {@link DirectBufferPool} is given, the file is read into a pooled buffer whenever it is decoded.
+ *
+ * @author cypherdare
+ */
+final class RestorableTextureData implements TextureData {
+
+    private final FileHandle file;
+    private final Pixmap.Format format;
+    private final boolean useMipMaps;
+    private final SourceBudget budget;
+    private final DirectBufferPool decodeBuffers;
+    private TextureData current;
+    private boolean budgetChecked;
+    private boolean keepDecoded;
+    private long reservedBytes;
+    private Pixmap decodedSource;
+    private byte[] compressedSource;
+
+    /**
+     * @param budget        The budget for keeping source data, or null to keep none.
+     * @param decodeBuffers The pool of buffers to read the file into for decoding, or null.
+     */
+    RestorableTextureData(FileHandle file, Pixmap.Format format, boolean useMipMaps, SourceBudget budget,
+                          DirectBufferPool decodeBuffers) {
+        this.file = file;
+        this.format = format;
+        this.useMipMaps = useMipMaps;
+        this.budget = budget;
+        this.decodeBuffers = decodeBuffers;
+        current = new FileTextureData(file, null, format, useMipMaps);
+    }
+
+    @Override
+    public TextureDataType getType() {
+        return TextureDataType.Pixmap;
+    }
+
+    @Override
+    public synchronized boolean isPrepared() {
+        return decodedSource != null || current.isPrepared();
+    }
+
+    @Override
+    public synchronized void prepare() {
+        if (decodedSource != null)
+            return;
+        if (compressedSource != null)
+            current = new FileTextureData(file, new Pixmap(compressedSource, 0, compressedSource.length), format, useMipMaps);
+        else if (decodeBuffers != null && !current.isPrepared())
+            current = decodeBuffers.loadFromFile(file, format, useMipMaps);
+        current.prepare();
+        if (!budgetChecked && budget != null) {
+            budgetChecked = true;
+            reserveSource();
+        }
+    }
+
+    private void reserveSource() {
+        long decodedBytes = (long) current.getWidth() * current.getHeight() * AssetMemoryEstimator.getBytesPerPixel(current.getFormat());
+        if (budget.reserve(decodedBytes)) {
+            keepDecoded = true;
+            reservedBytes = decodedBytes;
+            return;
+        }
+        long compressedBytes = file.length();
+        if (compressedBytes > 0 && budget.reserve(compressedBytes)) {
+            try {
+                compressedSource = file.readBytes();
+                reservedBytes = compressedBytes;
+            } catch (GdxRuntimeException e) {
+                budget.release(compressedBytes);
+            }
+        }
+    }
+
+    @Override
+    public synchronized Pixmap consumePixmap() {
+        if (decodedSource != null)
+            return decodedSource;
+        Pixmap pixmap = current.consumePixmap();
+        if (keepDecoded)
+            decodedSource = pixmap;
+        return pixmap;
+    }
+
+    @Override
+    public synchronized boolean disposePixmap() {
+        return decodedSource == null;
+    }
+
+    @Override
+    public void consumeCustomData(int target) {
+        throw new GdxRuntimeException("This TextureData implementation does not upload data itself");
+    }
+
+    @Override
+    public synchronized int getWidth() {
+        return decodedSource != null ? decodedSource.getWidth() : current.getWidth();
+    }
+
+    @Override
+    public synchronized int getHeight() {
+        return decodedSource != null ? decodedSource.getHeight() : current.getHeight();
+    }
+
+    @Override
+    public synchronized Pixmap.Format getFormat() {
+        return current.getFormat();
+    }
+
+    @Override
+    public boolean useMipMaps() {
+        return useMipMaps;
+    }
+
+    @Override
+    public boolean isManaged() {
+        return true;
+    }
+
+    /** @return Whether any source data is kept. */
+    synchronized boolean hasSource() {
+        return reservedBytes > 0;
+    }
+
+    /**
+     * Frees the kept source data and returns its space to the budget. If the texture needs to be restored later, its
+     * file is read and decoded again.
+     */
+    synchronized void releaseSource() {
+        if (decodedSource != null) {
+            decodedSource.dispose();
+            decodedSource = null;
+        }
+        compressedSource = null;
+        keepDecoded = false;
+        if (budget != null)
+            budget.release(reservedBytes);
+        reservedBytes = 0;
+    }
+
+    /** The number of bytes that RestorableTextureData instances may keep, shared between loading threads. */
+    static final class SourceBudget {
+        private long limit;
+        private long usedBytes;
+
+        synchronized void setLimit(long limit) {
+            this.limit = limit;
+        }
+
+        synchronized long getLimit() {
+            return limit;
+        }
+
+        synchronized long getUsedBytes() {
+            return usedBytes;
+        }
+
+        synchronized boolean reserve(long bytes) {
+            if (bytes <= 0 || usedBytes + bytes > limit)
+                return false;
+            usedBytes += bytes;
+            return true;
+        }
+
+        synchronized void release(long bytes) {
+            usedBytes -= bytes;
+        }
+    }
+}
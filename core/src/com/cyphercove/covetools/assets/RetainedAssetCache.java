@@ -0,0 +1,72 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectLongMap;
+
+/**
+ * Assets that are no longer referenced by any container but are kept loaded so they can be reused, ordered from least
+ * to most recently released.
+ *
+ * @author cypherdare
+ */
+final class RetainedAssetCache {
+
+    private final Array<String> fileNames = new Array<>();
+    private final ObjectLongMap<String> sizes = new ObjectLongMap<>();
+    private long totalBytes;
+
+    int size() {
+        return fileNames.size;
+    }
+
+    long getTotalBytes() {
+        return totalBytes;
+    }
+
+    void add(String fileName, long bytes) {
+        fileNames.add(fileName);
+        sizes.put(fileName, bytes);
+        totalBytes += bytes;
+    }
+
+    boolean contains(String fileName) {
+        return sizes.containsKey(fileName);
+    }
+
+    /** @return Whether the asset was retained. */
+    boolean remove(String fileName) {
+        if (!sizes.containsKey(fileName))
+            return false;
+        totalBytes -= sizes.remove(fileName, 0);
+        fileNames.removeValue(fileName, false);
+        return true;
+    }
+
+    /** @return The file name of the removed least recently released asset. */
+    String removeOldest() {
+        String fileName = fileNames.removeIndex(0);
+        totalBytes -= sizes.remove(fileName, 0);
+        return fileName;
+    }
+
+    void clear() {
+        fileNames.clear();
+        sizes.clear();
+        totalBytes = 0;
+    }
+}
@@ -30,6 +30,9 @@ public class ShaderProgramReloader {
      * <p>
      * Error checking for correct usage of AssignmentAssetManager annotations is skipped, with the assumption that the
      * container has already been used for loading.
+     * <p>
+     * This blocks until all the container's shaders are reloaded. On desktop, {@link AssetHotReloader} can instead
+     * reload just the shaders whose files changed, without blocking.
      *
      * @param assetManager The AssignmentAssetManager with shader programs to reload.
      * @param assetContainer The asset container whose shader programs are to be reloaded.
@@ -0,0 +1,184 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wraps the Pixmap TextureData of a texture without mip maps so its first upload is spread across several updates.
+ * The first time the data is consumed, only the texture's storage is allocated, and the AssetManager then uploads
+ * bands of rows with {@link #uploadRows(Texture, int)} until {@link #isUploading()} is false. Later uploads, such as
+ * context restores, upload the whole image at once. The source is prepared and converted to the target format on the
+ * loading thread.
+ *
+ * @author cypherdare
+ */
+final class SlicedTextureData implements TextureData {
+
+    private final TextureData source;
+    private Pixmap pixmap;
+    private boolean disposePixmap;
+    private long imageBytes;
+    private boolean allocated;
+    private int uploadedRows;
+
+    SlicedTextureData(TextureData source) {
+        this.source = source;
+    }
+
+    /** @return Whether the data can be wrapped: it supplies a Pixmap and does not generate mip maps. */
+    static boolean canSlice(TextureData data) {
+        return data.getType() == TextureDataType.Pixmap && !data.useMipMaps();
+    }
+
+    TextureData getSource() {
+        return source;
+    }
+
+    @Override
+    public TextureDataType getType() {
+        return TextureDataType.Custom;
+    }
+
+    @Override
+    public synchronized boolean isPrepared() {
+        return pixmap != null;
+    }
+
+    @Override
+    public synchronized void prepare() {
+        if (pixmap != null)
+            throw new GdxRuntimeException("Already prepared");
+        if (!source.isPrepared())
+            source.prepare();
+        Pixmap sourcePixmap = source.consumePixmap();
+        boolean disposeSource = source.disposePixmap();
+        Pixmap.Format format = source.getFormat();
+        if (format != null && format != sourcePixmap.getFormat()) {
+            Pixmap converted = new Pixmap(sourcePixmap.getWidth(), sourcePixmap.getHeight(), format);
+            converted.setBlending(Pixmap.Blending.None);
+            converted.drawPixmap(sourcePixmap, 0, 0, 0, 0, sourcePixmap.getWidth(), sourcePixmap.getHeight());
+            if (disposeSource)
+                sourcePixmap.dispose();
+            sourcePixmap = converted;
+            disposeSource = true;
+        }
+        pixmap = sourcePixmap;
+        disposePixmap = disposeSource;
+        imageBytes = (long) pixmap.getWidth() * pixmap.getHeight() * AssetMemoryEstimator.getBytesPerPixel(pixmap.getFormat());
+    }
+
+    @Override
+    public Pixmap consumePixmap() {
+        throw new GdxRuntimeException("This TextureData implementation does not return a Pixmap");
+    }
+
+    @Override
+    public boolean disposePixmap() {
+        throw new GdxRuntimeException("This TextureData implementation does not return a Pixmap");
+    }
+
+    @Override
+    public synchronized void consumeCustomData(int target) {
+        if (pixmap == null)
+            throw new GdxRuntimeException("Call prepare() before calling consumeCustomData()");
+        Gdx.gl.glPixelStorei(GL20.GL_UNPACK_ALIGNMENT, 1);
+        if (allocated) {
+            Gdx.gl.glTexImage2D(target, 0, pixmap.getGLInternalFormat(), pixmap.getWidth(), pixmap.getHeight(), 0,
+                    pixmap.getGLFormat(), pixmap.getGLType(), pixmap.getPixels());
+            releasePixmap();
+            return;
+        }
+        allocated = true;
+        Gdx.gl.glTexImage2D(target, 0, pixmap.getGLInternalFormat(), pixmap.getWidth(), pixmap.getHeight(), 0,
+                pixmap.getGLFormat(), pixmap.getGLType(), null);
+    }
+
+    /** @return Whether the texture's storage has been allocated and some rows still need to be uploaded. */
+    synchronized boolean isUploading() {
+        return allocated && pixmap != null;
+    }
+
+    /**
+     * Uploads the next band of rows of the image to the texture, which must be the one this data was loaded into.
+     * Afterwards, no texture is bound to the active texture unit, as after libGDX loads a texture.
+     *
+     * @param byteBudget The maximum number of bytes to upload. At least one row is always uploaded.
+     * @return The number of bytes uploaded.
+     */
+    synchronized int uploadRows(Texture texture, int byteBudget) {
+        int width = pixmap.getWidth();
+        int height = pixmap.getHeight();
+        int rowBytes = width * AssetMemoryEstimator.getBytesPerPixel(pixmap.getFormat());
+        int rows = Math.min(height - uploadedRows, Math.max(1, byteBudget / rowBytes));
+        ByteBuffer pixels = pixmap.getPixels();
+        texture.bind();
+        Gdx.gl.glPixelStorei(GL20.GL_UNPACK_ALIGNMENT, 1);
+        pixels.position(uploadedRows * rowBytes);
+        Gdx.gl.glTexSubImage2D(texture.glTarget, 0, 0, uploadedRows, width, rows, pixmap.getGLFormat(),
+                pixmap.getGLType(), pixels);
+        pixels.position(0);
+        Gdx.gl.glBindTexture(texture.glTarget, 0);
+        uploadedRows += rows;
+        if (uploadedRows == height)
+            releasePixmap();
+        return rows * rowBytes;
+    }
+
+    /** @return The size of the prepared image. */
+    synchronized long getImageBytes() {
+        return imageBytes;
+    }
+
+    /** Frees the image if it is still held, such as when the texture is unloaded before its upload completes. */
+    synchronized void releasePixmap() {
+        if (pixmap != null && disposePixmap)
+            pixmap.dispose();
+        pixmap = null;
+    }
+
+    @Override
+    public synchronized int getWidth() {
+        return pixmap != null ? pixmap.getWidth() : source.getWidth();
+    }
+
+    @Override
+    public synchronized int getHeight() {
+        return pixmap != null ? pixmap.getHeight() : source.getHeight();
+    }
+
+    @Override
+    public synchronized Pixmap.Format getFormat() {
+        return pixmap != null ? pixmap.getFormat() : source.getFormat();
+    }
+
+    @Override
+    public boolean useMipMaps() {
+        return false;
+    }
+
+    @Override
+    public boolean isManaged() {
+        return source.isManaged();
+    }
+}
@@ -0,0 +1,31 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.assets;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.TextureData;
+
+/**
+ * A Texture loader that creates the TextureData of image files itself. {@link AssignmentAssetManager} uses it to
+ * prepare textures ahead of loading when parallel texture decoding is enabled.
+ *
+ * @author cypherdare
+ */
+interface TextureDataFactory {
+    /** @return Unprepared TextureData for the image file. Must be safe to call from any thread. */
+    TextureData createTextureData (FileHandle file, Pixmap.Format format, boolean genMipMaps);
+}
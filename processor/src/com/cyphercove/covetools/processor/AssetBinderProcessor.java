@@ -0,0 +1,569 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates an {@code AssetBinder} for each class with fields annotated with {@code @Asset}, {@code @Assets},
+ * {@code @TextureAsset} or {@code @ShaderProgramAsset}, so AssignmentAssetManager can assign the fields directly
+ * instead of by reflection.
+ * <p>
+ * The binder is written into the package of the container class and accesses its fields directly, so a binder is
+ * only generated if the container class, its annotated fields and any parameter fields they name are not private.
+ * Otherwise a note is logged and the container class continues to be bound by reflection at runtime.
+ * <p>
+ * If the {@code covetools.assetsDir} option is set to the assets directory, the file of each asset is looked up in it.
+ * The file sizes are written into the binders, and a manifest listing the path, type, parameter and file size of each
+ * asset of each container class is written to {@value #MANIFEST_FILE} in the class output. A missing file is an error,
+ * unless the container implements {@code AssetContainer}, whose path prefix is only known at runtime.
+ *
+ * @author cypherdare
+ */
+@SupportedAnnotationTypes({
+        AssetBinderProcessor.ASSET,
+        AssetBinderProcessor.ASSETS,
+        AssetBinderProcessor.TEXTURE_ASSET,
+        AssetBinderProcessor.SHADER_PROGRAM_ASSET})
+@SupportedOptions(AssetBinderProcessor.ASSETS_DIR_OPTION)
+public class AssetBinderProcessor extends AbstractProcessor {
+
+    static final String ASSETS_PACKAGE = "com.cyphercove.covetools.assets";
+    static final String ASSET = ASSETS_PACKAGE + ".Asset";
+    static final String ASSETS = ASSETS_PACKAGE + ".Assets";
+    static final String TEXTURE_ASSET = ASSETS_PACKAGE + ".TextureAsset";
+    static final String SHADER_PROGRAM_ASSET = ASSETS_PACKAGE + ".ShaderProgramAsset";
+    static final String ASSET_REF = ASSETS_PACKAGE + ".AssetRef";
+    static final String ASSET_CONTAINER = ASSETS_PACKAGE + ".AssetContainer";
+    static final String BINDER_SUFFIX = "AssetBinder";
+    static final String ASSETS_DIR_OPTION = "covetools.assetsDir";
+    static final String MANIFEST_FILE = "META-INF/covetools/asset-manifest.txt";
+
+    /** Manifest lines of the container classes processed in all rounds, written when processing is over. */
+    private final StringBuilder manifest = new StringBuilder();
+    private final List<Element> manifestElements = new ArrayList<>();
+    /** The container class of each binder written in all rounds, by qualified binder name. */
+    private final Map<String, TypeElement> binderContainers = new HashMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> containerTypes = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.FIELD)
+                    containerTypes.add((TypeElement) element.getEnclosingElement());
+            }
+        }
+        for (TypeElement containerType : containerTypes) {
+            List<BinderSlot> slots = collectSlots(containerType);
+            if (slots == null)
+                continue;
+            String assetsDir = processingEnv.getOptions().get(ASSETS_DIR_OPTION);
+            if (assetsDir != null)
+                readFileSizes(containerType, slots, new File(assetsDir));
+            try {
+                writeBinder(containerType, slots);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Failed to write asset binder: " + e.getMessage(), containerType);
+            }
+        }
+        if (roundEnv.processingOver() && !manifestElements.isEmpty()) {
+            try (Writer writer = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", MANIFEST_FILE,
+                    manifestElements.toArray(new Element[0])).openWriter()) {
+                writer.write(manifest.toString());
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Failed to write asset manifest: " + e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the file size of each slot whose file is in the assets directory, reports missing files, and adds the slots
+     * to the manifest.
+     */
+    private void readFileSizes(TypeElement containerType, List<BinderSlot> slots, File assetsDir) {
+        TypeElement assetContainer = processingEnv.getElementUtils().getTypeElement(ASSET_CONTAINER);
+        boolean prefixed = assetContainer != null && processingEnv.getTypeUtils().isAssignable(
+                processingEnv.getTypeUtils().erasure(containerType.asType()), processingEnv.getTypeUtils().erasure(assetContainer.asType()));
+        String containerName = processingEnv.getElementUtils().getBinaryName(containerType).toString();
+        for (BinderSlot slot : slots) {
+            // A shader program's path names a pair of files rather than one, unless they are given separately.
+            if (slot.shaderVertexFile == null) {
+                File file = new File(assetsDir, slot.path);
+                if (file.isFile())
+                    slot.fileSize = file.length();
+                else if (!prefixed)
+                    error(findField(containerType, slot.fieldName), String.format("Asset file %s of field %s does not exist in %s.",
+                            slot.path, slot.fieldName, assetsDir.getPath()));
+            }
+            manifest.append(containerName).append('\t').append(slot.path).append('\t').append(slot.assetType).append('\t')
+                    .append(describeParameter(slot)).append('\t').append(slot.fileSize).append('\n');
+        }
+        manifestElements.add(containerType);
+    }
+
+    /** @return A short description of the loading parameters of a slot for the manifest, or an empty string if none. */
+    private static String describeParameter(BinderSlot slot) {
+        if (slot.textureFilter != null)
+            return "format=" + slot.textureFormat + " filter=" + slot.textureFilter + " wrap=" + slot.textureWrap;
+        if (slot.shaderVertexFile != null) {
+            String files = "";
+            if (!slot.shaderVertexFile.isEmpty())
+                files += "vertexFile=" + slot.shaderVertexFile;
+            if (!slot.shaderFragmentFile.isEmpty())
+                files += (files.isEmpty() ? "" : " ") + "fragmentFile=" + slot.shaderFragmentFile;
+            return files;
+        }
+        return slot.parameter == null ? "" : slot.parameter.name;
+    }
+
+    /**
+     * @return The slots of the container type in declaration order, or null if no binder can be generated for it.
+     */
+    private List<BinderSlot> collectSlots(TypeElement containerType) {
+        String inaccessibleReason = findInaccessibleReason(containerType);
+        if (inaccessibleReason != null) {
+            note(containerType, inaccessibleReason);
+            return null;
+        }
+        List<BinderSlot> slots = new ArrayList<>();
+        for (Element element : containerType.getEnclosedElements()) {
+            if (element.getKind() != ElementKind.FIELD)
+                continue;
+            VariableElement field = (VariableElement) element;
+            AnnotationMirror asset = findAnnotation(field, ASSET);
+            AnnotationMirror shaderProgramAsset = findAnnotation(field, SHADER_PROGRAM_ASSET);
+            AnnotationMirror textureAsset = findAnnotation(field, TEXTURE_ASSET);
+            AnnotationMirror assets = findAnnotation(field, ASSETS);
+            if (asset == null && shaderProgramAsset == null && textureAsset == null && assets == null)
+                continue;
+            if (field.getModifiers().contains(Modifier.PRIVATE)) {
+                note(field, "Asset field " + field.getSimpleName() + " is private.");
+                return null;
+            }
+            String fieldName = field.getSimpleName().toString();
+            TypeMirror fieldType = processingEnv.getTypeUtils().erasure(field.asType());
+            boolean lazy = fieldType.toString().equals(ASSET_REF);
+            String assetType = fieldType.toString();
+            if (lazy) {
+                List<? extends TypeMirror> typeArguments = ((DeclaredType) field.asType()).getTypeArguments();
+                if (typeArguments.size() != 1 || typeArguments.get(0).getKind() != TypeKind.DECLARED) {
+                    error(field, String.format("AssetRef field %s must declare its asset type.", fieldName));
+                    return null;
+                }
+                assetType = processingEnv.getTypeUtils().erasure(typeArguments.get(0)).toString();
+            }
+
+            if (asset != null) {
+                Map<String, AnnotationValue> values = getValues(asset);
+                String parameterName = (String) values.get("parameter").getValue();
+                ParameterReference parameter = resolveParameter(containerType, field, parameterName);
+                if (parameter == ParameterReference.INACCESSIBLE)
+                    return null;
+                BinderSlot slot = BinderSlot.single(fieldName, assetType, (String) values.get("value").getValue(), parameter);
+                slot.lazy = lazy;
+                slots.add(slot);
+            } else if (shaderProgramAsset != null) {
+                Map<String, AnnotationValue> values = getValues(shaderProgramAsset);
+                BinderSlot slot = BinderSlot.single(fieldName, assetType, (String) values.get("value").getValue(), null);
+                slot.lazy = lazy;
+                String prependAllCode = (String) values.get("prependAllCode").getValue();
+                slot.shaderVertexFile = (String) values.get("vertexFile").getValue();
+                slot.shaderFragmentFile = (String) values.get("fragmentFile").getValue();
+                slot.shaderPrependVertexCode = prependAllCode + values.get("prependVertexCode").getValue();
+                slot.shaderPrependFragmentCode = prependAllCode + values.get("prependFragmentCode").getValue();
+                slots.add(slot);
+            } else if (textureAsset != null) {
+                Map<String, AnnotationValue> values = getValues(textureAsset);
+                BinderSlot slot = BinderSlot.single(fieldName, assetType, (String) values.get("value").getValue(), null);
+                slot.lazy = lazy;
+                slot.textureFormat = enumConstantName(values.get("format"));
+                slot.textureFilter = enumConstantName(values.get("filter"));
+                slot.textureWrap = enumConstantName(values.get("wrap"));
+                slots.add(slot);
+            } else {
+                if (fieldType.getKind() != TypeKind.ARRAY) {
+                    error(field, String.format("@Assets may only be used with an array, and %s is not an array.", fieldName));
+                    return null;
+                }
+                String componentType = ((ArrayType) fieldType).getComponentType().toString();
+                if (componentType.equals(ASSET_REF)) {
+                    error(field, String.format("@Assets cannot be used with an array of AssetRefs, and %s is one.", fieldName));
+                    return null;
+                }
+                Map<String, AnnotationValue> values = getValues(assets);
+                List<String> fileNames = stringList(values.get("value"));
+                List<String> parameterNames = stringList(values.get("parameters"));
+                if (!parameterNames.isEmpty() && parameterNames.size() != fileNames.size()) {
+                    error(field, String.format("For asset array %s, number of parameters does not match number of file name values.", fieldName));
+                    return null;
+                }
+                for (int i = 0; i < fileNames.size(); i++) {
+                    String parameterName = parameterNames.isEmpty() ?
+                            (String) values.get("parameter").getValue() : parameterNames.get(i);
+                    ParameterReference parameter = resolveParameter(containerType, field, parameterName);
+                    if (parameter == ParameterReference.INACCESSIBLE)
+                        return null;
+                    slots.add(BinderSlot.element(fieldName, componentType, fileNames.get(i), parameter, i, fileNames.size()));
+                }
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * @return A description of why generated code in the same package cannot access the type, or null if it can.
+     */
+    private static String findInaccessibleReason(TypeElement containerType) {
+        Element element = containerType;
+        while (element instanceof TypeElement) {
+            TypeElement type = (TypeElement) element;
+            if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS)
+                return "Container class " + containerType.getQualifiedName() + " is local or anonymous.";
+            if (type.getModifiers().contains(Modifier.PRIVATE))
+                return "Container class " + containerType.getQualifiedName() + " is private or is nested in a private class.";
+            element = type.getEnclosingElement();
+        }
+        return null;
+    }
+
+    private ParameterReference resolveParameter(TypeElement containerType, VariableElement assetField, String parameterName) {
+        if (parameterName == null || parameterName.isEmpty())
+            return null;
+        if (parameterName.contains(".")) { // assume fully qualified, statically accessed
+            int lastDotIndex = parameterName.lastIndexOf('.');
+            String className = parameterName.substring(0, lastDotIndex).replace('$', '.');
+            String fieldName = parameterName.substring(lastDotIndex + 1);
+            TypeElement parameterContainer = processingEnv.getElementUtils().getTypeElement(className);
+            if (parameterContainer == null) {
+                note(assetField, "Parameter class " + className + " could not be found.");
+                return ParameterReference.INACCESSIBLE;
+            }
+            VariableElement parameterField = findField(parameterContainer, fieldName);
+            if (parameterField == null || parameterField.getModifiers().contains(Modifier.PRIVATE)
+                    || findInaccessibleReason(parameterContainer) != null) {
+                note(assetField, "Parameter field " + parameterName + " does not exist or is not accessible.");
+                return ParameterReference.INACCESSIBLE;
+            }
+            return new ParameterReference(parameterName, className + "." + fieldName);
+        }
+        VariableElement parameterField = findField(containerType, parameterName);
+        if (parameterField == null) {
+            error(assetField, String.format("The specified parameter %s for asset %s does not exist.", parameterName, assetField.getSimpleName()));
+            return ParameterReference.INACCESSIBLE;
+        }
+        if (parameterField.getModifiers().contains(Modifier.PRIVATE)) {
+            note(assetField, "Parameter field " + parameterName + " is private.");
+            return ParameterReference.INACCESSIBLE;
+        }
+        if (parameterField.getModifiers().contains(Modifier.STATIC))
+            return new ParameterReference(parameterName, containerType.getQualifiedName() + "." + parameterName);
+        return new ParameterReference(parameterName, "container." + parameterName);
+    }
+
+    private static VariableElement findField(TypeElement type, String name) {
+        for (Element element : type.getEnclosedElements()) {
+            if (element.getKind() == ElementKind.FIELD && element.getSimpleName().contentEquals(name))
+                return (VariableElement) element;
+        }
+        return null;
+    }
+
+    private void writeBinder(TypeElement containerType, List<BinderSlot> slots) throws IOException {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(containerType);
+        String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(containerType).toString();
+        // Nested class separators are doubled so a nested class can't share a binder name with a top-level class.
+        String binderName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                .replace("$", "$$") + BINDER_SUFFIX;
+        String qualifiedBinderName = packageName.isEmpty() ? binderName : packageName + "." + binderName;
+        TypeElement otherContainer = binderContainers.put(qualifiedBinderName, containerType);
+        if (otherContainer != null && otherContainer != containerType) {
+            error(containerType, String.format("Container classes %s and %s would both have the asset binder %s. Rename one of them.",
+                    otherContainer.getQualifiedName(), containerType.getQualifiedName(), qualifiedBinderName));
+            return;
+        }
+        String containerName = containerType.getQualifiedName().toString();
+        if (!containerType.getTypeParameters().isEmpty()) {
+            StringBuilder wildcards = new StringBuilder("<");
+            for (int i = 0; i < containerType.getTypeParameters().size(); i++)
+                wildcards.append(i == 0 ? "?" : ", ?");
+            containerName += wildcards.append('>');
+        }
+
+        BinderWriter out = new BinderWriter(processingEnv.getElementUtils());
+        if (!packageName.isEmpty())
+            out.line("package " + packageName + ";").line();
+        out.line("/**")
+                .line(" * Binds the asset fields of {@link " + containerType.getQualifiedName() + "}. Generated by covetools-processor.")
+                .line(" */")
+                .line("public final class " + binderName + " implements " + ASSETS_PACKAGE + ".AssetBinder<" + containerName + "> {")
+                .line();
+
+        out.line("    private static final Class<?>[] ASSET_TYPES = {");
+        for (BinderSlot slot : slots)
+            out.line("            " + slot.assetType + ".class,");
+        out.line("    };").line();
+
+        for (int i = 0; i < slots.size(); i++) {
+            BinderSlot slot = slots.get(i);
+            if (slot.textureFilter == null)
+                continue;
+            String filterPair = "com.cyphercove.covetools.graphics.TextureFilterPair." + slot.textureFilter;
+            out.line("    private static final com.badlogic.gdx.assets.loaders.TextureLoader.TextureParameter TEXTURE_PARAMETER_" + i + " =")
+                    .line("            new com.badlogic.gdx.assets.loaders.TextureLoader.TextureParameter();")
+                    .line("    static {")
+                    .line("        TEXTURE_PARAMETER_" + i + ".format = com.badlogic.gdx.graphics.Pixmap.Format." + slot.textureFormat + ";")
+                    .line("        TEXTURE_PARAMETER_" + i + ".minFilter = " + filterPair + ".minFilter;")
+                    .line("        TEXTURE_PARAMETER_" + i + ".magFilter = " + filterPair + ".magFilter;")
+                    .line("        TEXTURE_PARAMETER_" + i + ".genMipMaps = " + filterPair + ".usesMipMaps;")
+                    .line("        TEXTURE_PARAMETER_" + i + ".wrapU = TEXTURE_PARAMETER_" + i + ".wrapV = com.badlogic.gdx.graphics.Texture.TextureWrap." + slot.textureWrap + ";")
+                    .line("    }")
+                    .line();
+        }
+
+        out.line("    @Override")
+                .line("    public int getSlotCount() {")
+                .line("        return " + slots.size() + ";")
+                .line("    }")
+                .line();
+
+        out.line("    @Override")
+                .line("    public Class<?> getAssetType(int slot) {")
+                .line("        return ASSET_TYPES[slot];")
+                .line("    }")
+                .line();
+
+        out.line("    @Override")
+                .line("    public boolean isDescriptorShared(int slot) {")
+                .line("        switch (slot) {");
+        for (int i = 0; i < slots.size(); i++)
+            out.line("            case " + i + ": return " + (slots.get(i).parameter == null) + ";");
+        out.line("            default: throw new IndexOutOfBoundsException(\"slot: \" + slot);")
+                .line("        }")
+                .line("    }")
+                .line();
+
+        boolean hasLazySlots = false;
+        out.line("    @Override")
+                .line("    public boolean isLazy(int slot) {")
+                .line("        switch (slot) {");
+        for (int i = 0; i < slots.size(); i++) {
+            out.line("            case " + i + ": return " + slots.get(i).lazy + ";");
+            hasLazySlots |= slots.get(i).lazy;
+        }
+        out.line("            default: throw new IndexOutOfBoundsException(\"slot: \" + slot);")
+                .line("        }")
+                .line("    }")
+                .line();
+
+        boolean hasFileSizes = false;
+        for (BinderSlot slot : slots)
+            hasFileSizes |= slot.fileSize >= 0;
+        if (hasFileSizes) {
+            out.line("    @Override")
+                    .line("    public long getFileSize(int slot) {")
+                    .line("        switch (slot) {");
+            for (int i = 0; i < slots.size(); i++)
+                out.line("            case " + i + ": return " + slots.get(i).fileSize + "L;");
+            out.line("            default: throw new IndexOutOfBoundsException(\"slot: \" + slot);")
+                    .line("        }")
+                    .line("    }")
+                    .line();
+        }
+
+        out.line("    @Override")
+                .line("    public boolean isAssigned(" + containerName + " container, int slot) {")
+                .line("        switch (slot) {");
+        for (int i = 0; i < slots.size(); i++)
+            out.line("            case " + i + ": return container." + slots.get(i).fieldName + " != null;");
+        out.line("            default: throw new IndexOutOfBoundsException(\"slot: \" + slot);")
+                .line("        }")
+                .line("    }")
+                .line();
+
+        out.line("    @Override")
+                .line("    @SuppressWarnings({\"rawtypes\", \"unchecked\"})")
+                .line("    public com.badlogic.gdx.assets.AssetDescriptor<?> createDescriptor(" + containerName + " container, String pathPrefix, int slot) {")
+                .line("        switch (slot) {");
+        for (int i = 0; i < slots.size(); i++) {
+            BinderSlot slot = slots.get(i);
+            String parameter;
+            out.line("            case " + i + ": {");
+            if (slot.textureFilter != null) {
+                parameter = "TEXTURE_PARAMETER_" + i;
+            } else if (slot.shaderVertexFile != null) {
+                parameter = "parameter";
+                out.line("                com.badlogic.gdx.assets.loaders.ShaderProgramLoader.ShaderProgramParameter parameter =")
+                        .line("                        new com.badlogic.gdx.assets.loaders.ShaderProgramLoader.ShaderProgramParameter();");
+                if (!slot.shaderVertexFile.isEmpty())
+                    out.line("                parameter.vertexFile = pathPrefix + " + out.literal(slot.shaderVertexFile) + ";");
+                if (!slot.shaderFragmentFile.isEmpty())
+                    out.line("                parameter.fragmentFile = pathPrefix + " + out.literal(slot.shaderFragmentFile) + ";");
+                out.line("                parameter.logOnCompileFailure = " + SHADER_PROGRAM_ASSET + ".logOnCompileFailure;");
+                if (!slot.shaderPrependVertexCode.isEmpty())
+                    out.line("                parameter.prependVertexCode = " + out.literal(slot.shaderPrependVertexCode) + ";");
+                if (!slot.shaderPrependFragmentCode.isEmpty())
+                    out.line("                parameter.prependFragmentCode = " + out.literal(slot.shaderPrependFragmentCode) + ";");
+            } else if (slot.parameter != null) {
+                parameter = "parameter";
+                out.line("                com.badlogic.gdx.assets.AssetLoaderParameters parameter = " + slot.parameter.expression + ";")
+                        .line("                if (parameter == null)")
+                        .line("                    throw new com.badlogic.gdx.utils.GdxRuntimeException("
+                                + out.literal(String.format("The specified parameter %s for asset %s cannot be null.", slot.parameter.name, slot.fieldName)) + ");");
+            } else {
+                parameter = "null";
+            }
+            out.line("                return new com.badlogic.gdx.assets.AssetDescriptor(pathPrefix + " + out.literal(slot.path)
+                    + ", ASSET_TYPES[slot], " + parameter + ");")
+                    .line("            }");
+        }
+        out.line("            default: throw new IndexOutOfBoundsException(\"slot: \" + slot);")
+                .line("        }")
+                .line("    }")
+                .line();
+
+        out.line("    @Override");
+        if (hasLazySlots)
+            out.line("    @SuppressWarnings({\"rawtypes\", \"unchecked\"})");
+        out.line("    public void assign(" + containerName + " container, int slot, Object asset) {")
+                .line("        switch (slot) {");
+        for (int i = 0; i < slots.size(); i++) {
+            BinderSlot slot = slots.get(i);
+            out.line("            case " + i + ":");
+            if (slot.lazy) {
+                out.line("                container." + slot.fieldName + " = (" + ASSET_REF + ") asset;");
+            } else if (slot.arrayIndex < 0) {
+                out.line("                container." + slot.fieldName + " = (" + slot.assetType + ") asset;");
+            } else {
+                out.line("                if (container." + slot.fieldName + " == null)")
+                        .line("                    container." + slot.fieldName + " = new " + slot.assetType + "[" + slot.arrayLength + "];")
+                        .line("                container." + slot.fieldName + "[" + slot.arrayIndex + "] = (" + slot.assetType + ") asset;");
+            }
+            out.line("                return;");
+        }
+        out.line("            default: throw new IndexOutOfBoundsException(\"slot: \" + slot);")
+                .line("        }")
+                .line("    }")
+                .line();
+
+        out.line("    @Override")
+                .line("    public void clear(" + containerName + " container, int slot) {")
+                .line("        switch (slot) {");
+        for (int i = 0; i < slots.size(); i++) {
+            out.line("            case " + i + ":")
+                    .line("                container." + slots.get(i).fieldName + " = null;")
+                    .line("                return;");
+        }
+        out.line("            default: throw new IndexOutOfBoundsException(\"slot: \" + slot);")
+                .line("        }")
+                .line("    }")
+                .line("}");
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedBinderName, containerType).openWriter()) {
+            writer.write(out.toString());
+        }
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(annotationName))
+                return mirror;
+        }
+        return null;
+    }
+
+    private Map<String, AnnotationValue> getValues(AnnotationMirror mirror) {
+        Map<String, AnnotationValue> values = new java.util.HashMap<>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(), entry.getValue());
+        }
+        return values;
+    }
+
+    private static List<String> stringList(AnnotationValue value) {
+        List<String> strings = new ArrayList<>();
+        for (Object element : (List<?>) value.getValue())
+            strings.add((String) ((AnnotationValue) element).getValue());
+        return strings;
+    }
+
+    private static String enumConstantName(AnnotationValue value) {
+        return ((VariableElement) value.getValue()).getSimpleName().toString();
+    }
+
+    private void note(Element element, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                reason + " No asset binder will be generated, so reflection will be used.", element);
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /** An AssetLoaderParameters field named by an annotation, with the expression used to read it in generated code. */
+    static final class ParameterReference {
+        static final ParameterReference INACCESSIBLE = new ParameterReference(null, null);
+
+        final String name;
+        final String expression;
+
+        ParameterReference(String name, String expression) {
+            this.name = name;
+            this.expression = expression;
+        }
+    }
+}
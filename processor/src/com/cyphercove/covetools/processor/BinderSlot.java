@@ -0,0 +1,69 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.processor;
+
+/**
+ * One asset of a container class, as it will be written into a generated binder.
+ */
+final class BinderSlot {
+    final String fieldName;
+    /**
+     * The erased type of the asset, which is the component type for {@code @Assets} arrays and the type argument for
+     * {@code AssetRef} fields.
+     */
+    final String assetType;
+    final String path;
+    final AssetBinderProcessor.ParameterReference parameter;
+    /** Index into the array for {@code @Assets} fields, or -1 for a single asset field. */
+    final int arrayIndex;
+    final int arrayLength;
+
+    /** Whether the field is an {@code AssetRef}, which is assigned when queued instead of being loaded. */
+    boolean lazy;
+
+    /** The size of the asset's file in the assets directory, or -1 if no assets directory is set or it has no file. */
+    long fileSize = -1;
+
+    // Set for @TextureAsset fields.
+    String textureFormat;
+    String textureFilter;
+    String textureWrap;
+
+    // Set for @ShaderProgramAsset fields.
+    String shaderVertexFile;
+    String shaderFragmentFile;
+    String shaderPrependVertexCode;
+    String shaderPrependFragmentCode;
+
+    private BinderSlot(String fieldName, String assetType, String path, AssetBinderProcessor.ParameterReference parameter,
+                       int arrayIndex, int arrayLength) {
+        this.fieldName = fieldName;
+        this.assetType = assetType;
+        this.path = path;
+        this.parameter = parameter;
+        this.arrayIndex = arrayIndex;
+        this.arrayLength = arrayLength;
+    }
+
+    static BinderSlot single(String fieldName, String assetType, String path, AssetBinderProcessor.ParameterReference parameter) {
+        return new BinderSlot(fieldName, assetType, path, parameter, -1, 0);
+    }
+
+    static BinderSlot element(String fieldName, String componentType, String path, AssetBinderProcessor.ParameterReference parameter,
+                              int arrayIndex, int arrayLength) {
+        return new BinderSlot(fieldName, componentType, path, parameter, arrayIndex, arrayLength);
+    }
+}
@@ -0,0 +1,50 @@
+/* ******************************************************************************
+ * Copyright 2017 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.cyphercove.covetools.processor;
+
+import javax.lang.model.util.Elements;
+
+/**
+ * Accumulates the source code of a generated binder.
+ */
+final class BinderWriter {
+    private final StringBuilder source = new StringBuilder();
+    private final Elements elements;
+
+    BinderWriter(Elements elements) {
+        this.elements = elements;
+    }
+
+    BinderWriter line(String line) {
+        source.append(line).append('\n');
+        return this;
+    }
+
+    BinderWriter line() {
+        source.append('\n');
+        return this;
+    }
+
+    /** @return The value as a quoted and escaped Java string literal. */
+    String literal(String value) {
+        return elements.getConstantExpression(value);
+    }
+
+    @Override
+    public String toString() {
+        return source.toString();
+    }
+}